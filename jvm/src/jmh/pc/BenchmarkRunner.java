@@ -0,0 +1,46 @@
+package pc;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+//Main of benchmarks.jar. Takes the same arguments as the JMH Main, and runs the matching benchmarks once for each
+//thread count, then writes every result to a single JSON file, to compare with the results of a previous build.
+//  -Dpc.threads=1,2,4,8,16             thread counts to run at
+//  -Dpc.result=target/jmh-result.json  where to write the results
+//Benchmarks with thread groups run as many groups as fit in each thread count, at least one.
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        String[] threadCounts = System.getProperty("pc.threads", "1,2,4,8,16").split(",");
+        File resultFile = new File(System.getProperty("pc.result", "target/jmh-result.json"));
+
+        List<RunResult> results = new ArrayList<>();
+        for (String threads : threadCounts) {
+            Options options = new OptionsBuilder()
+                    .parent(commandLine)
+                    .threads(Integer.parseInt(threads.trim()))
+                    .build();
+            Collection<RunResult> run = new Runner(options).run();
+            results.addAll(run);
+        }
+
+        File parent = resultFile.getAbsoluteFile().getParentFile();
+        if (parent != null)
+            parent.mkdirs();
+        ResultFormatFactory.getInstance(ResultFormatType.JSON, resultFile.getPath()).writeOut(results);
+        System.out.println("Results of " + results.size() + " runs written to " + resultFile);
+    }
+}
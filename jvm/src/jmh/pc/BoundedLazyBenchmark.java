@@ -0,0 +1,45 @@
+package pc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+//Throughput and latency of BoundedLazy.get, with every thread on the same instance. With few lives, most gets
+//wait for a thread calculating the value again. java.util.concurrent has no lazy value with a bounded number of
+//uses, so there is nothing to compare with.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoundedLazyBenchmark {
+    private static final int TIMEOUT = 100;
+
+    @Param({"1", "1000"})
+    public int lives;
+
+    private BoundedLazy<Object> lazy;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        lazy = new BoundedLazy<>(Object::new, lives);
+    }
+
+    @Benchmark
+    public Optional<Object> get() throws Exception {
+        return lazy.get(TIMEOUT);
+    }
+}
@@ -0,0 +1,53 @@
+package pc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+//Throughput and latency of BroadcastBox, with a delivering thread for every three receiving ones.
+//java.util.concurrent has no synchronizer that hands one message to every thread waiting at the time,
+//so there is nothing to compare with.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadcastBoxBenchmark {
+    //Short, so receivers still waiting when an iteration ends leave soon
+    private static final int TIMEOUT = 100;
+
+    private BroadcastBox<Integer> box;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        box = new BroadcastBox<>();
+    }
+
+    @Benchmark
+    @Group("broadcast")
+    @GroupThreads(1)
+    public int deliverToAll() {
+        return box.deliverToAll(1);
+    }
+
+    @Benchmark
+    @Group("broadcast")
+    @GroupThreads(3)
+    public Optional<Integer> receive() throws InterruptedException {
+        return box.receive(TIMEOUT);
+    }
+}
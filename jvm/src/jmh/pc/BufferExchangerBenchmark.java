@@ -0,0 +1,82 @@
+package pc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+//Throughput of swapping two buffers between a producer and a consumer, on BufferExchanger with each WaitStrategy,
+//and on Exchanger. Every group of two threads has buffers and an exchanger of its own. Run with -prof gc to see what
+//each swap allocates.
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BufferExchangerBenchmark {
+    //Short, so a thread left without a partner when an iteration ends leaves soon
+    private static final int TIMEOUT = 100;
+    private static final int SIZE = 1024;
+
+    @Param({"PARK", "YIELD", "SPIN", "pc"})
+    public String impl;
+
+    private BufferExchanger<long[]> exchanger;
+    private Exchanger<long[]> pcExchanger;
+    private long[] producerBuffer;
+    private long[] consumerBuffer;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        if (impl.equals("pc"))
+            pcExchanger = new Exchanger<>();
+        else
+            exchanger = new BufferExchanger<>(new long[SIZE], new long[SIZE], WaitStrategy.valueOf(impl));
+        producerBuffer = new long[SIZE];
+        consumerBuffer = new long[SIZE];
+        if (exchanger != null) {
+            producerBuffer = exchanger.first();
+            consumerBuffer = exchanger.second();
+        }
+    }
+
+    @Benchmark
+    @Group("swap")
+    @GroupThreads(1)
+    public long[] produce() throws InterruptedException {
+        producerBuffer = swap(producerBuffer);
+        return producerBuffer;
+    }
+
+    @Benchmark
+    @Group("swap")
+    @GroupThreads(1)
+    public long[] consume() throws InterruptedException {
+        consumerBuffer = swap(consumerBuffer);
+        return consumerBuffer;
+    }
+
+    //Keeps the buffer on timeout, to swap it next time
+    private long[] swap(long[] buffer) throws InterruptedException {
+        if (exchanger != null) {
+            long[] other = exchanger.exchange(buffer, TIMEOUT);
+            return other != null ? other : buffer;
+        }
+        Optional<long[]> other = pcExchanger.exchange(buffer, TIMEOUT);
+        return other.orElse(buffer);
+    }
+}
@@ -0,0 +1,64 @@
+package pc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+//Throughput and latency of exchanges on Exchanger and ArenaExchanger against java.util.concurrent.Exchanger.
+//Threads come in pairs, so there is always a partner, all on the same exchanger.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExchangerBenchmark {
+    //Short, so a thread left without a partner when an iteration ends leaves soon
+    private static final int TIMEOUT = 100;
+
+    @Param({"pc", "arena", "juc"})
+    public String impl;
+
+    private Exchanger<Integer> exchanger;
+    private ArenaExchanger<Integer> arenaExchanger;
+    private java.util.concurrent.Exchanger<Integer> jucExchanger;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        exchanger = new Exchanger<>();
+        arenaExchanger = new ArenaExchanger<>();
+        jucExchanger = new java.util.concurrent.Exchanger<>();
+    }
+
+    @Benchmark
+    @Group("exchange")
+    @GroupThreads(2)
+    public Object exchange() throws InterruptedException {
+        switch (impl) {
+            case "pc":
+                return exchanger.exchange(1, TIMEOUT);
+            case "arena":
+                return arenaExchanger.exchange(1, TIMEOUT);
+        }
+        try {
+            return jucExchanger.exchange(1, TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return Optional.empty();
+        }
+    }
+}
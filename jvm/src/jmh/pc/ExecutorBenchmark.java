@@ -0,0 +1,105 @@
+package pc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+//Throughput and latency of a round trip through an executor: submit a tiny work and wait for its result.
+//Every benchmark thread is a submitter, all on the same executor. Compares ThreadPoolExecutor,
+//SimpleThreadPoolExecutor and VirtualThreadExecutor with a fixed java.util.concurrent pool and
+//a virtual thread per task executor.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExecutorBenchmark {
+    private static final int KEEP_ALIVE_TIME = 1000;
+    private static final int TIMEOUT = 10000;
+
+    @Param({"threadPool", "simpleThreadPool", "virtual", "jucThreadPool", "jucVirtual"})
+    public String executorType;
+
+    //Working threads of the pools, and permits of VirtualThreadExecutor
+    @Param({"4"})
+    public int poolSize;
+
+    private ThreadPoolExecutor<Integer> threadPool;
+    private SimpleThreadPoolExecutor simpleThreadPool;
+    private VirtualThreadExecutor<Integer> virtual;
+    private ExecutorService jucExecutor;
+    private Callable<Object> roundTrip;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        switch (executorType) {
+            case "threadPool":
+                threadPool = new ThreadPoolExecutor<>(poolSize, KEEP_ALIVE_TIME);
+                roundTrip = () -> threadPool.execute(() -> 1).get(TIMEOUT);
+                break;
+            case "simpleThreadPool":
+                simpleThreadPool = new SimpleThreadPoolExecutor(poolSize, KEEP_ALIVE_TIME);
+                roundTrip = () -> {
+                    Promise<Integer> result = new Promise<>();
+                    simpleThreadPool.execute(() -> result.complete(1), TIMEOUT);
+                    return result.get(TIMEOUT);
+                };
+                break;
+            case "virtual":
+                virtual = new VirtualThreadExecutor<>(poolSize);
+                roundTrip = () -> virtual.execute(() -> 1).get(TIMEOUT);
+                break;
+            case "jucThreadPool":
+                jucExecutor = Executors.newFixedThreadPool(poolSize);
+                roundTrip = () -> jucExecutor.submit(() -> 1).get(TIMEOUT, TimeUnit.MILLISECONDS);
+                break;
+            case "jucVirtual":
+                jucExecutor = Executors.newVirtualThreadPerTaskExecutor();
+                roundTrip = () -> jucExecutor.submit(() -> 1).get(TIMEOUT, TimeUnit.MILLISECONDS);
+                break;
+            default:
+                throw new IllegalArgumentException(executorType);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        if (threadPool != null) {
+            threadPool.shutdown();
+            threadPool.awaitTermination(KEEP_ALIVE_TIME * 2);
+        }
+        if (simpleThreadPool != null) {
+            simpleThreadPool.Shutdown();
+            simpleThreadPool.awaitTermination(KEEP_ALIVE_TIME * 2);
+        }
+        if (virtual != null) {
+            virtual.shutdown();
+            virtual.awaitTermination(KEEP_ALIVE_TIME * 2);
+        }
+        if (jucExecutor != null) {
+            jucExecutor.shutdown();
+            jucExecutor.awaitTermination(KEEP_ALIVE_TIME * 2, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Benchmark
+    public Object roundTrip() throws Exception {
+        return roundTrip.call();
+    }
+}
@@ -0,0 +1,58 @@
+package pc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+//Rounds per second of every thread meeting on GroupExchanger, against CyclicBarrier, which only meets, with no data.
+//All the threads of the run are parties, each at its thread index.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GroupExchangerBenchmark {
+    //Short, so threads still waiting when an iteration ends leave soon
+    private static final int TIMEOUT = 100;
+
+    @Param({"pc", "juc"})
+    public String impl;
+
+    private GroupExchanger<Integer> exchanger;
+    private CyclicBarrier barrier;
+
+    @Setup(Level.Trial)
+    public void setup(BenchmarkParams params) {
+        exchanger = new GroupExchanger<>(params.getThreads());
+        barrier = new CyclicBarrier(params.getThreads());
+    }
+
+    @Benchmark
+    public Object exchange(ThreadParams thread) throws InterruptedException {
+        if (impl.equals("pc"))
+            return exchanger.exchange(thread.getThreadIndex(), 1, TIMEOUT);
+        try {
+            return barrier.await(TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | BrokenBarrierException e) {
+            barrier.reset();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package pc;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+//Throughput of a 1:1 stage, one thread putting and one taking, on each queue MessageQueue can make.
+//Every group of two threads has a queue of its own. A put on a full queue or a take on an empty one still counts as
+//an operation, so the messages actually passed through are counted apart, as puts and takes.
+//putTake is a put followed by a take on the same thread, the cost of the queue operations alone, without
+//depending on both threads of the stage running at the same time.
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageQueueBenchmark {
+    private static final int CAPACITY = 1024;
+
+    @Param({"unbounded", "bounded", "spsc"})
+    public String impl;
+
+    private MessageQueue<Integer> queue;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        switch (impl) {
+            case "unbounded":
+                queue = MessageQueue.unbounded();
+                break;
+            case "bounded":
+                queue = MessageQueue.bounded(CAPACITY);
+                break;
+            case "spsc":
+                queue = MessageQueue.singleProducerSingleConsumer(CAPACITY);
+                break;
+            default:
+                throw new IllegalArgumentException(impl);
+        }
+    }
+
+    @Benchmark
+    @Group("stage")
+    @GroupThreads(1)
+    public void put(Passed passed) {
+        if (queue.put(1))
+            passed.puts++;
+    }
+
+    @Benchmark
+    @Group("stage")
+    @GroupThreads(1)
+    public Integer take(Passed passed) {
+        Integer message = queue.take();
+        if (message != null)
+            passed.takes++;
+        return message;
+    }
+
+    @Benchmark
+    @Group("putTake")
+    @GroupThreads(1)
+    public Integer putTake() {
+        queue.put(1);
+        return queue.take();
+    }
+
+    //Messages each thread got through the queue
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Passed {
+        public long puts;
+        public long takes;
+
+        @Setup(Level.Iteration)
+        public void setup() {
+            puts = 0;
+            takes = 0;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package pc;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+//Throughput of MulticastRing with a publishing thread for every three subscribing ones, as in BroadcastBoxBenchmark,
+//under each OverflowPolicy. Every group has a ring of its own. A publish on a full ring or a poll with nothing new still
+//counts as an operation, so the messages actually passed through are counted apart, as published and received.
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MulticastRingBenchmark {
+    private static final int CAPACITY = 1024;
+
+    @Param({"BLOCK", "OVERWRITE"})
+    public String overflowPolicy;
+
+    private MulticastRing<Integer> ring;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ring = new MulticastRing<>(CAPACITY, OverflowPolicy.valueOf(overflowPolicy), WaitStrategy.SPIN);
+    }
+
+    @Benchmark
+    @Group("multicast")
+    @GroupThreads(1)
+    public void publish(Passed passed) {
+        if (ring.publish(1))
+            passed.published++;
+    }
+
+    @Benchmark
+    @Group("multicast")
+    @GroupThreads(3)
+    public Integer poll(Passed passed, Subscription subscription) {
+        Integer message = subscription.subscriber.poll();
+        if (message != null)
+            passed.received++;
+        return message;
+    }
+
+    //Each subscribing thread's subscriber, on its group's ring
+    @State(Scope.Thread)
+    public static class Subscription {
+        MulticastRing<Integer>.Subscriber subscriber;
+
+        @Setup(Level.Trial)
+        public void setup(MulticastRingBenchmark benchmark) {
+            subscriber = benchmark.ring.subscribe();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            subscriber.unsubscribe();
+        }
+    }
+
+    //Messages each thread got through the ring
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Passed {
+        public long published;
+        public long received;
+
+        @Setup(Level.Iteration)
+        public void setup() {
+            published = 0;
+            received = 0;
+        }
+    }
+}
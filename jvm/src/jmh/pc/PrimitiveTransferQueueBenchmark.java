@@ -0,0 +1,60 @@
+package pc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+//Throughput of long messages through LongTransferQueue against boxing them through SafeTransferQueue and
+//RingTransferQueue. The ids put are past the Long cache, so every boxed put allocates. Run with -prof gc to see
+//what each operation allocates.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrimitiveTransferQueueBenchmark {
+    private static final int CAPACITY = 1024;
+    private static final long ID = 1_000_000L;
+
+    private SafeTransferQueue<Long> queue;
+    private RingTransferQueue<Long> ringQueue;
+    private LongTransferQueue longQueue;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        queue = new SafeTransferQueue<>();
+        ringQueue = new RingTransferQueue<>(CAPACITY);
+        longQueue = new LongTransferQueue(CAPACITY);
+    }
+
+    @Benchmark
+    public long boxedLinked() {
+        queue.put(ID);
+        Long id = queue.take();
+        return id == null ? -1 : id;
+    }
+
+    @Benchmark
+    public long boxedRing() {
+        ringQueue.put(ID);
+        Long id = ringQueue.take();
+        return id == null ? -1 : id;
+    }
+
+    @Benchmark
+    public long primitive() {
+        longQueue.put(ID);
+        return longQueue.take(-1);
+    }
+}
@@ -0,0 +1,67 @@
+package pc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+//Throughput and latency of SafeTransferQueue against ConcurrentLinkedQueue, the same Michael-Scott queue, and of
+//the bounded RingTransferQueue against ArrayBlockingQueue. Each operation is a put followed by a take, so the queue
+//stays short however the threads are scheduled. Run with -prof gc to see what each operation allocates.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SafeTransferQueueBenchmark {
+
+    //Bounded queues only, more than enough for every thread to have a message in it
+    private static final int CAPACITY = 1024;
+
+    @Param({"pc", "ring", "juc", "jucArray"})
+    public String impl;
+
+    private SafeTransferQueue<Integer> queue;
+    private RingTransferQueue<Integer> ringQueue;
+    private ConcurrentLinkedQueue<Integer> jucQueue;
+    private ArrayBlockingQueue<Integer> jucArrayQueue;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        queue = new SafeTransferQueue<>();
+        ringQueue = new RingTransferQueue<>(CAPACITY);
+        jucQueue = new ConcurrentLinkedQueue<>();
+        jucArrayQueue = new ArrayBlockingQueue<>(CAPACITY);
+    }
+
+    @Benchmark
+    public Integer putTake() {
+        switch (impl) {
+            case "pc":
+                queue.put(1);
+                return queue.take();
+            case "ring":
+                ringQueue.put(1);
+                return ringQueue.take();
+            case "juc":
+                jucQueue.offer(1);
+                return jucQueue.poll();
+            default:
+                jucArrayQueue.offer(1);
+                return jucArrayQueue.poll();
+        }
+    }
+}
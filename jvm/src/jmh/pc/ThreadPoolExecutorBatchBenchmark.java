@@ -0,0 +1,71 @@
+package pc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+//Time to submit a batch of small works to ThreadPoolExecutor and await all of them,
+//with one executeAll call against a loop of execute calls.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ThreadPoolExecutorBatchBenchmark {
+    private static final int KEEP_ALIVE_TIME = 1000;
+    private static final int TIMEOUT = 60000;
+
+    @Param({"100", "1000"})
+    public int batchSize;
+
+    @Param({"4"})
+    public int maxPoolSize;
+
+    private ThreadPoolExecutor<Integer> executor;
+    private List<Callable<Integer>> commands;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        executor = new ThreadPoolExecutor<>(maxPoolSize, KEEP_ALIVE_TIME);
+        commands = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            int value = i;
+            commands.add(() -> value);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(KEEP_ALIVE_TIME * 2);
+    }
+
+    @Benchmark
+    public Object executeLoop() throws Exception {
+        List<Result<Integer>> results = new ArrayList<>(batchSize);
+        for (Callable<Integer> command : commands)
+            results.add(executor.execute(command));
+        return Result.allOf(results).get(TIMEOUT);
+    }
+
+    @Benchmark
+    public Object executeAll() throws Exception {
+        return executor.executeAll(commands).firstFailure().get(TIMEOUT);
+    }
+}
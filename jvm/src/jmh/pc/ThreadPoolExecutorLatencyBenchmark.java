@@ -0,0 +1,60 @@
+package pc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+//Submit-to-start latency of ThreadPoolExecutor: the time from execute() until the work starts running on a
+//working thread. SampleTime mode reports the p50/p90/p99 percentiles.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ThreadPoolExecutorLatencyBenchmark {
+    private static final int KEEP_ALIVE_TIME = 1000;
+
+    @Param({"1", "4"})
+    public int maxPoolSize;
+
+    private ThreadPoolExecutor<Boolean> executor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        executor = new ThreadPoolExecutor<>(maxPoolSize, KEEP_ALIVE_TIME);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(KEEP_ALIVE_TIME * 2);
+    }
+
+    @Benchmark
+    public boolean submitToStart() {
+        AtomicBoolean started = new AtomicBoolean();
+        executor.execute(() -> {
+            started.set(true);
+            return true;
+        });
+
+        //Yield until the work started, so the sample is the submit-to-start latency
+        while (!started.get())
+            Thread.yield();
+        return started.get();
+    }
+}
@@ -0,0 +1,121 @@
+package pc;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.TimeUnit;
+
+//Throughput and latency of handing messages from transferring threads to taking threads, on TransferQueue and
+//DualTransferQueue against LinkedTransferQueue. Every pair of threads is a transferrer and a taker, all on the
+//same queue.
+//putTake measures put, followed by a take so the queue stays short. It also counts the threads started for each
+//put, and run with -prof gc it shows how much each put allocates.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransferQueueBenchmark {
+    //Short, so threads blocked when an iteration ends leave soon
+    private static final int TIMEOUT = 100;
+
+    @Param({"pc", "dual", "juc"})
+    public String impl;
+
+    private TransferQueue<Integer> queue;
+    private DualTransferQueue<Integer> dualQueue;
+    private LinkedTransferQueue<Integer> jucQueue;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        queue = new TransferQueue<>();
+        dualQueue = new DualTransferQueue<>();
+        jucQueue = new LinkedTransferQueue<>();
+    }
+
+    @Benchmark
+    @Group("transfer")
+    @GroupThreads(1)
+    public boolean transfer() throws InterruptedException {
+        switch (impl) {
+            case "pc":
+                return queue.transfer(1, TIMEOUT);
+            case "dual":
+                return dualQueue.transfer(1, TIMEOUT);
+            default:
+                return jucQueue.tryTransfer(1, TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Benchmark
+    @Group("transfer")
+    @GroupThreads(1)
+    public Integer take() throws InterruptedException {
+        switch (impl) {
+            case "pc":
+                return queue.take(TIMEOUT);
+            case "dual":
+                return dualQueue.take(TIMEOUT);
+            default:
+                return jucQueue.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Benchmark
+    public Integer putTake(ThreadCounters counters) throws InterruptedException {
+        switch (impl) {
+            case "pc":
+                queue.put(1);
+                return queue.take(TIMEOUT);
+            case "dual":
+                dualQueue.put(1);
+                return dualQueue.take(TIMEOUT);
+            default:
+                jucQueue.put(1);
+                return jucQueue.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    //Threads the JVM started during each iteration. Every benchmark thread reports its share,
+    //so the total is the count for the whole iteration.
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ThreadCounters {
+        private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+        public double threadsStarted;
+        private long startCount;
+        private int threads;
+
+        @Setup(Level.Iteration)
+        public void setup(BenchmarkParams params) {
+            threads = params.getThreads();
+            threadsStarted = 0;
+            startCount = threadBean.getTotalStartedThreadCount();
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            threadsStarted = (double) (threadBean.getTotalStartedThreadCount() - startCount) / threads;
+        }
+    }
+}
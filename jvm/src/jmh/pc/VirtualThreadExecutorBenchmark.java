@@ -0,0 +1,73 @@
+package pc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//Throughput of 10k concurrent works that block for a while, as I/O bound work does,
+//on VirtualThreadExecutor against ThreadPoolExecutor with a fixed number of platform threads.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(VirtualThreadExecutorBenchmark.WORKS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class VirtualThreadExecutorBenchmark {
+    static final int WORKS = 10000;
+    private static final int BLOCK_TIME = 10;
+    private static final int KEEP_ALIVE_TIME = 1000;
+    private static final int TIMEOUT = 60000;
+
+    @Param({"virtual", "threadPool"})
+    public String executorType;
+
+    //Permits of the VirtualThreadExecutor, or working threads of the ThreadPoolExecutor
+    @Param({"10000"})
+    public int virtualConcurrency;
+
+    @Param({"256"})
+    public int threadPoolSize;
+
+    private ResultExecutor<Integer> executor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        executor = executorType.equals("virtual")
+                ? new VirtualThreadExecutor<>(virtualConcurrency)
+                : new ThreadPoolExecutor<>(threadPoolSize, KEEP_ALIVE_TIME);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(KEEP_ALIVE_TIME * 2);
+    }
+
+    @Benchmark
+    public Object blockingWorks() throws Exception {
+        List<Result<Integer>> results = new ArrayList<>(WORKS);
+        for (int i = 0; i < WORKS; i++) {
+            results.add(executor.execute(() -> {
+                Thread.sleep(BLOCK_TIME);
+                return 1;
+            }));
+        }
+        return Result.allOf(results).get(TIMEOUT);
+    }
+}
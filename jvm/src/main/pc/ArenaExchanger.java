@@ -0,0 +1,147 @@
+package pc;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+//Lock-free Exchanger. A thread offers its data by putting its node in an empty slot with a CAS, and the partner that
+//finds it there takes it out of the slot with another CAS, leaves its own data in the node and unparks the owner.
+//Without contention every pair meets on the first slot. When CASes on a slot keep failing, the arena of slots in use
+//grows, so pairs spread over more slots, and it shrinks again when threads on the other slots find no partner.
+//Each thread reuses a node of its own for all its exchanges, so an exchange allocates nothing but its Optional.
+public class ArenaExchanger<T> {
+    private static final int NCPU = Runtime.getRuntime().availableProcessors();
+    //References between slots, and around them, so each sits on a cache line of its own
+    private static final int PAD = 16;
+    //Slots beyond the first, one for every pair of processors
+    private static final int MAX_BOUND = Math.min(NCPU >>> 1, 64);
+    //Spins waiting for a partner: on the first slot before parking, on the others before moving closer to the first
+    private static final int SPINS = NCPU > 1 ? 1 << 10 : 0;
+    //Failed CASes on a slot before a thread grows the arena
+    private static final int COLLISIONS = 2;
+
+    private final AtomicReferenceArray<Node> slots = new AtomicReferenceArray<>((MAX_BOUND + 2) * PAD);
+    //Index of the last slot in use
+    private final AtomicInteger bound = new AtomicInteger(0);
+    private final ThreadLocal<Node> participant = ThreadLocal.withInitial(Node::new);
+
+    //Waits up to timeout milliseconds for a partner, returns its data, or empty if the timeout was reached
+    @SuppressWarnings("unchecked")
+    public Optional<T> exchange(T mydata, long timeout) throws InterruptedException {
+        if (mydata == null)
+            throw new NullPointerException();
+        if (Thread.interrupted())
+            throw new InterruptedException();
+
+        Node p = participant.get();
+        p.item = mydata;
+        long limit = Timeouts.start(timeout);
+        int i = Math.min(p.index, bound.get());
+        while (true) {
+            int slot = (i + 1) * PAD;
+            Node q = slots.get(slot);
+            if (q != null) {
+                //A partner is waiting, take it out of the slot before anyone else does
+                if (slots.compareAndSet(slot, q, null)) {
+                    Object data = q.item;
+                    q.match = mydata;
+                    Thread waiter = q.parked;
+                    if (waiter != null)
+                        LockSupport.unpark(waiter);
+                    return done(p, i, data);
+                }
+                i = collide(p, i);
+            } else if (slots.compareAndSet(slot, null, p)) {
+                Object data = await(p, slot, i, limit);
+                if (data != null)
+                    return done(p, i, data);
+
+                //Withdrawn from the slot
+                if (Thread.interrupted()) {
+                    p.item = null;
+                    throw new InterruptedException();
+                }
+                if (Timeouts.isTimeout(Timeouts.remaining(limit))) {
+                    p.item = null;
+                    p.index = i;
+                    return Optional.empty();
+                }
+                //No partner came to a slot beyond the first, so the arena is bigger than it needs to be
+                int b = bound.get();
+                if (b > 0)
+                    bound.compareAndSet(b, b - 1);
+                i = Math.min(i >>> 1, bound.get());
+            } else {
+                i = collide(p, i);
+            }
+        }
+    }
+
+    //Waits on the slot for a partner to take p out of it, and returns the partner's data.
+    //Returns null if p was withdrawn from the slot instead: on timeout, on interrupt, or when no partner came to a
+    //slot beyond the first while spinning.
+    private Object await(Node p, int slot, int i, long limit) {
+        Thread th = Thread.currentThread();
+        int spins = SPINS;
+        while (true) {
+            Object data = p.match;
+            if (data != null)
+                return data;
+
+            long remaining = Timeouts.remaining(limit);
+            if (th.isInterrupted() || Timeouts.isTimeout(remaining) || (i != 0 && spins <= 0)) {
+                if (slots.compareAndSet(slot, p, null))
+                    return null;
+                //A partner took p out of the slot first, its data is on the way
+                while ((data = p.match) == null)
+                    Thread.onSpinWait();
+                return data;
+            }
+
+            if (spins > 0) {
+                spins--;
+                Thread.onSpinWait();
+            } else {
+                p.parked = th;
+                //A partner unparks it only if it sees parked set, so look once more after setting it
+                if (p.match == null)
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(remaining));
+                p.parked = null;
+            }
+        }
+    }
+
+    //A CAS on slot i failed, because another thread got there first. After a few of those, grows the arena,
+    //and moves to a random slot in it.
+    private int collide(Node p, int i) {
+        if (++p.collisions < COLLISIONS)
+            return i;
+        p.collisions = 0;
+        int b = bound.get();
+        if (b < MAX_BOUND && bound.compareAndSet(b, b + 1))
+            b++;
+        return ThreadLocalRandom.current().nextInt(b + 1);
+    }
+
+    //Clears the node for the next exchange, which starts on the slot this one ended on
+    @SuppressWarnings("unchecked")
+    private Optional<T> done(Node p, int i, Object data) {
+        p.item = null;
+        p.match = null;
+        p.index = i;
+        return Optional.of((T) data);
+    }
+
+    //A thread's offer. Only the owner writes item, index and collisions. match is written once per exchange, by the
+    //partner that took the node out of its slot.
+    private static class Node {
+        Object item;
+        int index;
+        int collisions;
+        volatile Object match;
+        volatile Thread parked;
+    }
+}
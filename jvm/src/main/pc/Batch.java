@@ -0,0 +1,54 @@
+package pc;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Handle of a batch of work given together to ThreadPoolExecutor.executeAll, to be awaited as a unit
+public class Batch<T> {
+    private final List<Result<T>> results;
+    private final Result<List<T>> firstFailure;
+    private final Promise<Void> allComplete;
+
+    Batch(List<? extends Result<T>> results) {
+        this.results = Collections.unmodifiableList(results);
+        this.firstFailure = Promise.allOf(results);
+        this.allComplete = new Promise<>(Promise.executorOf(results));
+
+        //Count down every completion, successful or not
+        AtomicInteger remaining = new AtomicInteger(results.size());
+        if (results.isEmpty())
+            allComplete.complete(null);
+        for (Result<T> result : results) {
+            Promise.whenComplete(result, (value, exception) -> {
+                if (remaining.decrementAndGet() == 0)
+                    allComplete.complete(null);
+            });
+        }
+    }
+
+    //The result of each work, in the order they were given
+    public List<Result<T>> getResults() {
+        return results;
+    }
+
+    //Completes with every value once all the work completed, or fails as soon as one of them fails
+    public Result<List<T>> firstFailure() {
+        return firstFailure;
+    }
+
+    //Completes once all the work completed, successfully or not
+    public Result<Void> allComplete() {
+        return allComplete;
+    }
+
+    //Cancel every work of the batch that isn't complete. Returns how many were cancelled.
+    public int tryCancel() {
+        int cancelled = 0;
+        for (Result<T> result : results) {
+            if (result.tryCancel())
+                cancelled++;
+        }
+        return cancelled;
+    }
+}
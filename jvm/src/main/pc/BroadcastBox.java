@@ -2,79 +2,121 @@ package pc;
 
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
+//Receivers enter the current box and park on it. deliverToAll swaps in a new box with a single atomic operation,
+//so receivers coming later wait for the next message, then puts the message in the old box, closes it and unparks
+//the receivers in it. Closing and leaving are both CASes on the box's count of receivers, so a receiver that times
+//out either leaves before the box is closed, and isn't counted, or stays and gets the message.
 public class BroadcastBox<E> {
-    private final Lock mon = new ReentrantLock();
-    private final Condition cond = mon.newCondition();
-    private Box currBox = new Box();
+    //Set in a box's count once the box is closed
+    private static final int CLOSED = 1 << 30;
 
+    private final AtomicReference<Box> currBox = new AtomicReference<>(new Box());
 
+    //Delivers message to every receiver waiting, on the caller thread, and returns how many there were
     public int deliverToAll(E message){
-        Box seenBox = currBox;
+        if (message == null)
+            throw new NullPointerException();
+        Box seenBox = currBox.getAndSet(new Box());
         seenBox.message = message;
-        new Thread(() -> {
-            try {
-                mon.lock();
-                currBox = new Box();
-                cond.signalAll();
-            } finally {
-                mon.unlock();
-            }
-        }).start();
-        return seenBox.total;
+        int total = seenBox.count.getAndAdd(CLOSED);
+
+        //Receivers become waiters before they first look at the count, and only park while it isn't closed,
+        //so none of them is missed
+        for (Waiter waiter = seenBox.waiters.getAndSet(null); waiter != null; waiter = waiter.next)
+            LockSupport.unpark(waiter.thread);
+        return total;
     }
 
     public Optional<E> receive(long timeout) throws InterruptedException{
-        try {
-            mon.lock();
-            Box enteredBox = currBox.enter();
-
-            long limit = Timeouts.start(timeout);
-            long remaining = Timeouts.remaining(limit);
-            while (true) {
-                //Start wait
-                cond.await(remaining, TimeUnit.MILLISECONDS);
-
-                //See if there is a message in the box, and if this thread's place in the box wasn't taken
-                if(enteredBox.message != null && enteredBox.taken < enteredBox.total)
-                    return Optional.of(enteredBox.takeMessage());
+        if (Thread.interrupted())
+            throw new InterruptedException();
 
-                //Enter new box if thread's place was taken in previous box
-                if(enteredBox.taken >= enteredBox.total)
-                    enteredBox = currBox.enter();
+        Box enteredBox = enter();
+        Thread th = Thread.currentThread();
+        long limit = Timeouts.start(timeout);
+        while (true) {
+            //See if the box was closed, with a message for every receiver in it
+            if (enteredBox.isClosed())
+                return Optional.of(enteredBox.message);
 
-                //Leave wait loop if timeout reached
-                remaining = Timeouts.remaining(limit);
-                if (Timeouts.isTimeout(remaining)) {
-                    enteredBox.leave();
+            //Leave if timeout reached or interrupted, unless the box was closed first
+            long remaining = Timeouts.remaining(limit);
+            if (th.isInterrupted() || Timeouts.isTimeout(remaining)) {
+                if (enteredBox.leave()) {
+                    if (Thread.interrupted())
+                        throw new InterruptedException();
                     return Optional.empty();
                 }
+                continue;
+            }
+
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(remaining));
+        }
+    }
+
+    //Enters the current box, and makes the thread one of its waiters
+    private Box enter() {
+        while (true) {
+            Box box = currBox.get();
+            if (box.enter()) {
+                box.push(new Waiter(Thread.currentThread()));
+                return box;
             }
-        } finally {
-            mon.unlock();
+            //Closed, and already swapped out, so the new box is in place
         }
     }
 
     private class Box{
-        E message;
-        int total = 0;
-        int taken = 0;
+        volatile E message;
+        //Receivers in the box, and CLOSED once the message is in
+        final AtomicInteger count = new AtomicInteger(0);
+        final AtomicReference<Waiter> waiters = new AtomicReference<>(null);
 
-        Box enter() {
-            total++;
-            return this;
+        boolean enter() {
+            while (true) {
+                int observed = count.get();
+                if (observed >= CLOSED)
+                    return false;
+                if (count.compareAndSet(observed, observed + 1))
+                    return true;
+            }
+        }
+
+        //Returns false if the box was closed first, and the receiver got the message
+        boolean leave() {
+            while (true) {
+                int observed = count.get();
+                if (observed >= CLOSED)
+                    return false;
+                if (count.compareAndSet(observed, observed - 1))
+                    return true;
+            }
         }
 
-        void leave() {
-            total--;
+        boolean isClosed() {
+            return count.get() >= CLOSED;
         }
 
-        public E takeMessage() {
-            taken++;
-            return message;
+        void push(Waiter waiter) {
+            while (true) {
+                Waiter observedTop = waiters.get();
+                waiter.next = observedTop;
+                if (waiters.compareAndSet(observedTop, waiter))
+                    return;
+            }
+        }
+    }
+
+    private static class Waiter {
+        final Thread thread;
+        Waiter next;
+
+        Waiter(Thread thread) {
+            this.thread = thread;
         }
     }
 }
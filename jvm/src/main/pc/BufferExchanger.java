@@ -0,0 +1,128 @@
+package pc;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+//Exchanger for double buffering between two threads, say a producer filling buffers and a consumer draining them.
+//There are only ever the two buffers made up front, each thread owning one, so a thread that gives its buffer away
+//already knows which one it gets back. The first to arrive leaves its buffer in the slot, and its partner takes it
+//with a single CAS, leaving TAKEN behind. Nothing is allocated per exchange, not even an Optional: exchange returns
+//null on timeout.
+public class BufferExchanger<B> {
+    //Left in the slot by the partner that took the buffer there, until the waiter sees it
+    private static final Object TAKEN = new Object();
+
+    private final B first;
+    private final B second;
+    private final WaitStrategy waitStrategy;
+    //Null, the buffer of the thread waiting for a partner, or TAKEN
+    private final AtomicReference<Object> slot = new AtomicReference<>(null);
+    //The thread owning each buffer, to unpark while it waits. Only the owner writes it, so a thread that fails to
+    //leave its buffer in the slot can't overwrite the partner's.
+    private volatile Thread firstOwner;
+    private volatile Thread secondOwner;
+
+    public BufferExchanger(B first, B second) {
+        this(first, second, WaitStrategy.PARK);
+    }
+
+    //How a thread waits for its partner
+    public BufferExchanger(B first, B second, WaitStrategy waitStrategy) {
+        if (first == null || second == null)
+            throw new NullPointerException();
+        if (first == second)
+            throw new IllegalArgumentException();
+        this.first = first;
+        this.second = second;
+        this.waitStrategy = waitStrategy;
+    }
+
+    //Makes both buffers with factory
+    public BufferExchanger(Supplier<B> factory) {
+        this(factory.get(), factory.get());
+    }
+
+    //The buffer one of the threads starts with, usually the producer
+    public B first() {
+        return first;
+    }
+
+    //The buffer the other thread starts with, usually the consumer
+    public B second() {
+        return second;
+    }
+
+    //Gives mybuffer to the partner and returns the partner's, waiting up to timeout milliseconds for it.
+    //Returns null if the timeout was reached, and mybuffer is still the caller's.
+    public B exchange(B mybuffer, long timeout) throws InterruptedException {
+        B other = other(mybuffer);
+        if (Thread.interrupted())
+            throw new InterruptedException();
+
+        long limit = Timeouts.start(timeout);
+        for (long tries = 0; ; tries++) {
+            Object observed = slot.get();
+            if (observed == mybuffer)
+                //The same buffer can't be in two threads' hands
+                throw new IllegalStateException();
+            if (observed == other) {
+                //The partner is waiting, take its buffer
+                if (slot.compareAndSet(other, TAKEN)) {
+                    Thread th = other == first ? firstOwner : secondOwner;
+                    if (th != null)
+                        LockSupport.unpark(th);
+                    return other;
+                }
+            } else if (observed == null) {
+                if (mybuffer == first)
+                    firstOwner = Thread.currentThread();
+                else
+                    secondOwner = Thread.currentThread();
+                if (slot.compareAndSet(null, mybuffer))
+                    return await(mybuffer, other, limit);
+            } else {
+                //TAKEN, the last exchange's waiter hasn't seen it yet
+                if (Timeouts.isTimeout(Timeouts.remaining(limit)))
+                    return null;
+                if (!waitStrategy.idle(tries))
+                    Thread.yield();
+            }
+        }
+    }
+
+    //Waits for the partner to take mybuffer from the slot, or withdraws it on timeout or interrupt
+    private B await(B mybuffer, B other, long limit) throws InterruptedException {
+        Thread th = Thread.currentThread();
+        for (long tries = 0; ; tries++) {
+            if (slot.get() == TAKEN) {
+                slot.set(null);
+                return other;
+            }
+
+            long remaining = Timeouts.remaining(limit);
+            boolean interrupted = th.isInterrupted();
+            if (interrupted || Timeouts.isTimeout(remaining)) {
+                if (slot.compareAndSet(mybuffer, null)) {
+                    if (Thread.interrupted())
+                        throw new InterruptedException();
+                    return null;
+                }
+                //The partner took it first
+                continue;
+            }
+
+            if (!waitStrategy.idle(tries))
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(remaining));
+        }
+    }
+
+    private B other(B mybuffer) {
+        if (mybuffer == first)
+            return second;
+        if (mybuffer == second)
+            return first;
+        throw new IllegalArgumentException();
+    }
+}
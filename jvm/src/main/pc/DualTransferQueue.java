@@ -0,0 +1,175 @@
+package pc;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+//Lock-free TransferQueue, built as a dual queue on the Michael-Scott list of SafeTransferQueue: the list holds either
+//messages waiting for takers, or takers waiting for messages, never both kinds unmatched at once.
+//A thread that finds the opposite kind of node matches the first one with a single CAS on its item, and unparks
+//the thread waiting on it. Otherwise it appends its own node and parks on it, until a matching thread fills it in,
+//or the timeout cancels it with a CAS on the same item. A cancelled node is only marked, and left for the head to
+//move past, so cancelling never walks the list.
+public class DualTransferQueue<E> {
+    //How xfer waits for a match
+    private static final int NOW = 0;
+    private static final int ASYNC = 1;
+    private static final int TIMED = 2;
+
+    //Spins before parking, only worth it when the matching thread may be running at the same time
+    private static final int SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 64 : 0;
+
+    private final AtomicReference<Node> head;
+    private final AtomicReference<Node> tail;
+
+    public DualTransferQueue() {
+        //A data node without data counts as matched
+        Node sentinel = new Node(null, true, null);
+        head = new AtomicReference<>(sentinel);
+        tail = new AtomicReference<>(sentinel);
+    }
+
+    //Never waits: hands the message to a waiting taker, or leaves it in the queue
+    public void put(E message) {
+        xfer(message, true, ASYNC, 0);
+    }
+
+    //Waits until a taker gets the message, or timeout milliseconds pass and the message is withdrawn
+    public boolean transfer(E message, long timeout) throws InterruptedException {
+        if (xfer(message, true, Timeouts.noWait(timeout) ? NOW : TIMED, timeout) == null)
+            return true;
+        if (!Thread.interrupted())
+            return false;
+        throw new InterruptedException();
+    }
+
+    //Waits until there's a message, or returns null after timeout milliseconds
+    public E take(long timeout) throws InterruptedException {
+        E message = xfer(null, false, Timeouts.noWait(timeout) ? NOW : TIMED, timeout);
+        if (message != null || !Thread.interrupted())
+            return message;
+        throw new InterruptedException();
+    }
+
+    //Returns the item matched, so null for a message taken, or the message for a taker served.
+    //When there's no match, returns e.
+    @SuppressWarnings("unchecked")
+    private E xfer(E e, boolean haveData, int how, long timeout) {
+        if (haveData && e == null)
+            throw new NullPointerException();
+        Node node = null;
+        while (true) {
+            Node pred = last();
+            //When the last node is of our kind, every node waiting is, so skip straight to appending
+            if (pred.isData != haveData && pred != head.get()) {
+                Node h = head.get();
+                pred = h;
+                boolean retry = false;
+                for (Node p = h.next.get(); p != null; pred = p, p = p.next.get()) {
+                    Object x = p.item.get();
+                    if (p.isMatched(x))
+                        continue;
+                    if (p.isData == haveData) {
+                        //Another thread of our kind got in first, it's behind its node now
+                        retry = true;
+                        break;
+                    }
+                    if (p.item.compareAndSet(x, e)) {
+                        //Every node up to p is matched
+                        head.compareAndSet(h, p);
+                        LockSupport.unpark(p.waiter);
+                        return (E) x;
+                    }
+                }
+                if (retry)
+                    continue;
+                //Every node was matched, so pred can be followed by one of any kind
+                head.compareAndSet(h, pred);
+            }
+
+            if (how == NOW)
+                return e;
+            if (node == null)
+                node = new Node(e, haveData, how == ASYNC ? null : Thread.currentThread());
+            if (!pred.next.compareAndSet(null, node))
+                continue;
+            tail.compareAndSet(pred, node);
+            if (how == ASYNC)
+                return e;
+            return awaitMatch(node, e, timeout);
+        }
+    }
+
+    //Last node in the list, moving the tail up to it if it lags
+    private Node last() {
+        Node t = tail.get();
+        Node p = t;
+        Node next;
+        while ((next = p.next.get()) != null)
+            p = next;
+        if (p != t)
+            tail.compareAndSet(t, p);
+        return p;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E awaitMatch(Node node, E e, long timeout) {
+        Thread th = Thread.currentThread();
+        long limit = Timeouts.start(timeout);
+        int spins = SPINS;
+        while (true) {
+            Object x = node.item.get();
+            if (x != e)
+                return (E) x;
+
+            //Cancel, unless a matching thread got in first
+            long remaining = Timeouts.remaining(limit);
+            if (th.isInterrupted() || Timeouts.isTimeout(remaining)) {
+                if (node.item.compareAndSet(e, node)) {
+                    skipMatched();
+                    return e;
+                }
+                continue;
+            }
+
+            if (spins > 0) {
+                spins--;
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(remaining));
+            }
+        }
+    }
+
+    //Moves the head past the matched nodes at the front, so nodes cancelled while nothing else arrives don't pile up
+    private void skipMatched() {
+        Node h = head.get();
+        Node p;
+        while ((p = h.next.get()) != null && p.isMatched(p.item.get())) {
+            if (head.compareAndSet(h, p))
+                h = p;
+            else
+                h = head.get();
+        }
+    }
+
+    //A message waiting for a taker, holding the message until taken, or a taker waiting for a message,
+    //holding null until served. Cancelled nodes hold themselves.
+    private static class Node {
+        final boolean isData;
+        final AtomicReference<Object> item;
+        final AtomicReference<Node> next = new AtomicReference<>(null);
+        //Null for messages put without waiting
+        final Thread waiter;
+
+        Node(Object item, boolean isData, Thread waiter) {
+            this.item = new AtomicReference<>(item);
+            this.isData = isData;
+            this.waiter = waiter;
+        }
+
+        boolean isMatched(Object x) {
+            return x == this || (x == null) == isData;
+        }
+    }
+}
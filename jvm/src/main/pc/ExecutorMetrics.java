@@ -0,0 +1,135 @@
+package pc;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+//Counters and histograms an executor records as it runs work. Counters are LongAdders and the histograms
+//are striped too, so recording adds no contention between working threads.
+//A snapshot only reads them, so it can be exported at any time without pausing the executor.
+public class ExecutorMetrics {
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram runTime = new LatencyHistogram();
+    private final IntSupplier queueDepth;
+
+    //queueDepth is read at each snapshot, and must not block
+    ExecutorMetrics(IntSupplier queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    void submitted() {
+        submitted.increment();
+    }
+
+    void rejected() {
+        rejected.increment();
+    }
+
+    //Work started running after waiting for waitNanos since it was submitted
+    void started(long waitNanos) {
+        queueWait.record(waitNanos);
+    }
+
+    //Work ran for runNanos, and completed or failed
+    void finished(long runNanos, boolean success) {
+        runTime.record(runNanos);
+        if (success)
+            completed.increment();
+        else
+            failed.increment();
+    }
+
+    long completedCount() {
+        return completed.sum();
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(submitted.sum(), completed.sum(), failed.sum(), rejected.sum(), queueDepth.getAsInt(),
+                queueWait.snapshot(), runTime.snapshot());
+    }
+
+    //Metrics of an executor at a point in time. Durations are given in milliseconds.
+    public static class Snapshot {
+        private final long submitted;
+        private final long completed;
+        private final long failed;
+        private final long rejected;
+        private final int queueDepth;
+        private final LatencyHistogram.Snapshot queueWait;
+        private final LatencyHistogram.Snapshot runTime;
+
+        private Snapshot(long submitted, long completed, long failed, long rejected, int queueDepth,
+                         LatencyHistogram.Snapshot queueWait, LatencyHistogram.Snapshot runTime) {
+            this.submitted = submitted;
+            this.completed = completed;
+            this.failed = failed;
+            this.rejected = rejected;
+            this.queueDepth = queueDepth;
+            this.queueWait = queueWait;
+            this.runTime = runTime;
+        }
+
+        public long getSubmitted() {
+            return submitted;
+        }
+
+        public long getCompleted() {
+            return completed;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        //Work waiting to run, when the snapshot was taken
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        //From submission until the work started running
+        public LatencyHistogram.Snapshot getQueueWait() {
+            return queueWait;
+        }
+
+        public LatencyHistogram.Snapshot getRunTime() {
+            return runTime;
+        }
+
+        //Flat name to value map, for exporting to a monitoring system
+        public Map<String, Number> toMap() {
+            Map<String, Number> map = new LinkedHashMap<>();
+            map.put("submitted", submitted);
+            map.put("completed", completed);
+            map.put("failed", failed);
+            map.put("rejected", rejected);
+            map.put("queueDepth", queueDepth);
+            putHistogram(map, "queueWait", queueWait);
+            putHistogram(map, "runTime", runTime);
+            return map;
+        }
+
+        private static void putHistogram(Map<String, Number> map, String name, LatencyHistogram.Snapshot histogram) {
+            map.put(name + ".count", histogram.getCount());
+            map.put(name + ".mean", histogram.getMean());
+            map.put(name + ".p50", histogram.getPercentile(50));
+            map.put(name + ".p90", histogram.getPercentile(90));
+            map.put(name + ".p99", histogram.getPercentile(99));
+            map.put(name + ".p999", histogram.getPercentile(99.9));
+            map.put(name + ".max", histogram.getMax());
+        }
+
+        @Override
+        public String toString() {
+            return toMap().toString();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package pc;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+//Exchanger for a fixed number of parties: each one contributes its data at its own index, waits for all the others,
+//and gets back every contribution. Parties arrive on a combining tree: each party counts itself on its leaf, and only
+//the last to arrive at a node goes on to count on its parent, so no counter sees more than FAN_IN arrivals. The last
+//to arrive at the root releases every party of the generation at once.
+//A party leaving on timeout or interrupt breaks its generation. The others waiting on it then start over on a new
+//generation, so to them it's as if the party never came, as when a thread leaves Exchanger.exchange.
+public class GroupExchanger<T> {
+    private static final int FAN_IN = 4;
+    //Ints between counters, and around them, so each sits on a cache line of its own
+    private static final int PAD = 16;
+
+    private static final int OPEN = 0;
+    private static final int RELEASED = 1;
+    private static final int BROKEN = 2;
+    //Returned by await only, when the waiting party broke the generation itself
+    private static final int WITHDRAWN = 3;
+
+    private final int parties;
+    //The tree, leaves first: the leaf of party p is p / FAN_IN, and the root is the last node
+    private final int[] parent;
+    private final int[] arrivals;
+    private final WaitStrategy waitStrategy;
+    private final AtomicReference<Generation> current;
+
+    public GroupExchanger(int parties) {
+        this(parties, WaitStrategy.PARK);
+    }
+
+    //How a party waits for the others
+    public GroupExchanger(int parties, WaitStrategy waitStrategy) {
+        if (parties <= 0)
+            throw new IllegalArgumentException();
+        this.parties = parties;
+        this.waitStrategy = waitStrategy;
+
+        int nodes = 0;
+        for (int n = parties; n > 1 || nodes == 0; n = (n + FAN_IN - 1) / FAN_IN)
+            nodes += (n + FAN_IN - 1) / FAN_IN;
+        parent = new int[nodes];
+        arrivals = new int[nodes];
+        int start = 0;
+        int n = parties;
+        while (true) {
+            int size = (n + FAN_IN - 1) / FAN_IN;
+            for (int i = 0; i < size; i++) {
+                arrivals[start + i] = Math.min(FAN_IN, n - i * FAN_IN);
+                parent[start + i] = size == 1 ? -1 : start + size + i / FAN_IN;
+            }
+            if (size == 1)
+                break;
+            start += size;
+            n = size;
+        }
+        current = new AtomicReference<>(new Generation());
+    }
+
+    public int parties() {
+        return parties;
+    }
+
+    //Contributes mydata as party, from 0 to parties - 1, and waits up to timeout milliseconds for the other parties.
+    //Returns every party's data, by party, or empty if the timeout was reached.
+    public Optional<List<T>> exchange(int party, T mydata, long timeout) throws InterruptedException {
+        if (party < 0 || party >= parties)
+            throw new IllegalArgumentException();
+        if (mydata == null)
+            throw new NullPointerException();
+
+        long limit = Timeouts.start(timeout);
+        while (true) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+
+            Generation gen = current.get();
+            if (!gen.contributions.compareAndSet(party, null, mydata)) {
+                //The same party can't be in a generation twice
+                if (gen.state.get() == OPEN)
+                    throw new IllegalStateException();
+                //Ended, but the next generation isn't in place yet
+                Thread.onSpinWait();
+                continue;
+            }
+            gen.waiters.set(party, Thread.currentThread());
+            arrive(gen, party / FAN_IN);
+
+            int state = await(gen, limit);
+            if (state == RELEASED)
+                return Optional.of(gen);
+            if (state == WITHDRAWN) {
+                if (Thread.interrupted())
+                    throw new InterruptedException();
+                return Optional.empty();
+            }
+            //Broken by another party leaving, so start over on the next generation, unless it's time to leave too
+            if (Timeouts.isTimeout(Timeouts.remaining(limit)))
+                return Optional.empty();
+        }
+    }
+
+    //Counts the party on its leaf, and climbs for as long as it's the last to arrive at a node
+    private void arrive(Generation gen, int node) {
+        while (gen.counts.incrementAndGet((node + 1) * PAD) == arrivals[node]) {
+            node = parent[node];
+            if (node < 0) {
+                end(gen, RELEASED);
+                return;
+            }
+        }
+    }
+
+    //Waits for the generation to end. Breaks it on timeout or interrupt, unless it ended first.
+    private int await(Generation gen, long limit) {
+        Thread th = Thread.currentThread();
+        for (long tries = 0; ; tries++) {
+            int state = gen.state.get();
+            if (state != OPEN)
+                return state;
+
+            long remaining = Timeouts.remaining(limit);
+            if (th.isInterrupted() || Timeouts.isTimeout(remaining)) {
+                if (end(gen, BROKEN))
+                    return WITHDRAWN;
+                continue;
+            }
+
+            if (!waitStrategy.idle(tries))
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(remaining));
+        }
+    }
+
+    //Ends the generation as state, puts the next one in place, and unparks every party that came.
+    //Returns false if it had already ended.
+    private boolean end(Generation gen, int state) {
+        if (!gen.state.compareAndSet(OPEN, state))
+            return false;
+        current.compareAndSet(gen, new Generation());
+        for (int i = 0; i < parties; i++) {
+            Thread th = gen.waiters.get(i);
+            if (th != null)
+                LockSupport.unpark(th);
+        }
+        return true;
+    }
+
+    //One round of the exchange. Once released, it's also the list of contributions every party gets back,
+    //which no one writes to anymore.
+    private class Generation extends AbstractList<T> {
+        final AtomicInteger state = new AtomicInteger(OPEN);
+        final AtomicReferenceArray<T> contributions = new AtomicReferenceArray<>(parties);
+        final AtomicReferenceArray<Thread> waiters = new AtomicReferenceArray<>(parties);
+        final AtomicIntegerArray counts = new AtomicIntegerArray((parent.length + 2) * PAD);
+
+        @Override
+        public T get(int index) {
+            return contributions.get(index);
+        }
+
+        @Override
+        public int size() {
+            return parties;
+        }
+    }
+}
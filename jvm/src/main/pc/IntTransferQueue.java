@@ -0,0 +1,68 @@
+package pc;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+//RingTransferQueue for int messages, kept in an int array so nothing is boxed and put and take allocate nothing.
+//An int has no null to say the queue is empty, so take returns a value the caller chose as the empty one instead.
+public class IntTransferQueue extends SequencedRing {
+    private final AtomicIntegerArray buffer;
+
+    //capacity is rounded up to a power of two
+    public IntTransferQueue(int capacity) {
+        super(capacity);
+        buffer = new AtomicIntegerArray(slots(capacity));
+    }
+
+    //Never waits, returns false when the queue is full
+    public boolean put(int message) {
+        long pos = claimPut();
+        if (pos < 0)
+            return false;
+        buffer.lazySet(index(pos), message);
+        published(pos);
+        return true;
+    }
+
+    //Waits up to timeout milliseconds for room, returns false if the timeout was reached
+    public boolean put(int message, long timeout) throws InterruptedException {
+        if (put(message))
+            return true;
+        if (Timeouts.noWait(timeout))
+            return false;
+
+        long limit = Timeouts.start(timeout);
+        for (int tries = 0; ; tries++) {
+            backOff(tries);
+            if (put(message))
+                return true;
+            if (Timeouts.isTimeout(Timeouts.remaining(limit)))
+                return false;
+        }
+    }
+
+    //Never waits, returns empty when the queue is empty
+    public int take(int empty) {
+        long pos = claimTake();
+        if (pos < 0)
+            return empty;
+        int message = buffer.get(index(pos));
+        released(pos);
+        return message;
+    }
+
+    //Waits up to timeout milliseconds for a message, returns empty if the timeout was reached.
+    //empty should be a value no one puts, or a message equal to it can't be told apart from the timeout.
+    public int take(long timeout, int empty) throws InterruptedException {
+        int message = take(empty);
+        if (message != empty || Timeouts.noWait(timeout))
+            return message;
+
+        long limit = Timeouts.start(timeout);
+        for (int tries = 0; ; tries++) {
+            backOff(tries);
+            message = take(empty);
+            if (message != empty || Timeouts.isTimeout(Timeouts.remaining(limit)))
+                return message;
+        }
+    }
+}
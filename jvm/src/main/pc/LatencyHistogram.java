@@ -0,0 +1,136 @@
+package pc;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+//Histogram of durations in nanoseconds, with buckets laid out like an HDR histogram: each power of two is split into
+//SUB_BUCKETS linear buckets, so any recorded value is off by at most 1/SUB_BUCKETS of itself (about 6%).
+//Counts are striped by thread, like a LongAdder, so threads recording at the same time rarely touch the same
+//cache line. Taking a snapshot only reads, it never stops the threads recording.
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    //Longer durations, over about 18 minutes, are counted in the last bucket
+    private static final int MAX_MAGNITUDE = 40;
+    private static final int BUCKETS = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+    private static final int STRIPES = stripes();
+
+    private final AtomicLongArray[] counts = new AtomicLongArray[STRIPES];
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < STRIPES; i++)
+            counts[i] = new AtomicLongArray(BUCKETS);
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        int stripe = (int) Thread.currentThread().threadId() & (STRIPES - 1);
+        counts[stripe].incrementAndGet(bucketOf(nanos));
+        total.add(nanos);
+
+        //Only write max when it goes up, which soon becomes rare
+        long current;
+        while (nanos > (current = max.get()) && !max.compareAndSet(current, nanos))
+            ;
+    }
+
+    //The counts while other threads keep recording, so it may be a few values off from any single moment
+    public Snapshot snapshot() {
+        long[] merged = new long[BUCKETS];
+        long count = 0;
+        for (AtomicLongArray stripe : counts) {
+            for (int i = 0; i < BUCKETS; i++) {
+                long value = stripe.get(i);
+                merged[i] += value;
+                count += value;
+            }
+        }
+        return new Snapshot(merged, count, total.sum(), max.get());
+    }
+
+    private static int bucketOf(long nanos) {
+        //Values below SUB_BUCKETS have a bucket each, above that the magnitude picks the row
+        //and the next SUB_BUCKET_BITS bits the bucket in it
+        if (nanos < SUB_BUCKETS)
+            return (int) nanos;
+        int magnitude = 63 - Long.numberOfLeadingZeros(nanos);
+        if (magnitude > MAX_MAGNITUDE)
+            return BUCKETS - 1;
+        int subBucket = (int) (nanos >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    //Highest value counted in the bucket
+    private static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int magnitude = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        int shift = magnitude - SUB_BUCKET_BITS;
+        return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+
+    private static int stripes() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        return Math.min(Integer.highestOneBit(processors * 2 - 1), 16);
+    }
+
+    //Counts of a histogram at a point in time. Durations are given in milliseconds.
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long total;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long total, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.total = total;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : toMillis((double) total / count);
+        }
+
+        public double getMax() {
+            return toMillis(max);
+        }
+
+        //Duration under which the given percentage of the values are, between 0 and 100
+        public double getPercentile(double percentile) {
+            if (percentile < 0 || percentile > 100)
+                throw new IllegalArgumentException();
+            if (count == 0)
+                return 0;
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank)
+                    return toMillis(Math.min(highestValueOf(i), max));
+            }
+            return getMax();
+        }
+
+        private static double toMillis(double nanos) {
+            return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        @Override
+        public String toString() {
+            return "{count=" + count + ", mean=" + getMean() + ", p50=" + getPercentile(50) +
+                    ", p99=" + getPercentile(99) + ", max=" + getMax() + "}";
+        }
+    }
+}
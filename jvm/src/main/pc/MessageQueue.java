@@ -0,0 +1,26 @@
+package pc;
+
+//Contract shared by the non-blocking queues, and factories to pick the one that fits how threads use it
+public interface MessageQueue<E> {
+    //Never waits, returns false when a bounded queue is full
+    boolean put(E message);
+
+    //Never waits, returns null when the queue is empty
+    E take();
+
+    //Linked, any number of threads may put and take
+    static <E> MessageQueue<E> unbounded() {
+        return new SafeTransferQueue<>();
+    }
+
+    //Ring buffer, any number of threads may put and take. capacity is rounded up to a power of two.
+    static <E> MessageQueue<E> bounded(int capacity) {
+        return new RingTransferQueue<>(capacity);
+    }
+
+    //Ring buffer for exactly one thread putting and one thread taking, at a time.
+    //capacity is rounded up to a power of two.
+    static <E> MessageQueue<E> singleProducerSingleConsumer(int capacity) {
+        return new SpscTransferQueue<>(capacity);
+    }
+}
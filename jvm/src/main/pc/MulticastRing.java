@@ -0,0 +1,273 @@
+package pc;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+//BroadcastBox successor where every subscriber gets every message, not only the receivers waiting at the time.
+//Messages go in a ring buffer allocated up front, numbered by a publisher sequence, and every subscriber has a cursor
+//with the sequence of the next message it reads. Publishers claim sequences with a CAS, and publish a message by
+//writing its sequence in its slot, so a slot's sequence says which message it holds.
+//With OverflowPolicy.BLOCK, a publisher can't claim a sequence a lap ahead of the slowest cursor. With OVERWRITE it
+//never waits for subscribers, and a subscriber that was lapped skips to the oldest message still in the ring.
+public class MulticastRing<E> {
+    //Longs between the publisher sequence and the cached cursor, and around them, so they sit on cache lines of their own
+    private static final int PAD = 16;
+    //Next sequence to claim
+    private static final int CURSOR = PAD;
+    //Slowest cursor when publishers last looked, so they don't read every cursor on every claim
+    private static final int GATING = 2 * PAD;
+    //A subscriber's cursor, with longs around it so it sits on a cache line of its own
+    private static final int NEXT = PAD;
+    //In a slot's sequence while its message is being overwritten
+    private static final long WRITING = Long.MIN_VALUE;
+    //How long a publisher blocked by a subscriber parks at a time, as subscribers don't wake it
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final int mask;
+    private final OverflowPolicy overflowPolicy;
+    private final WaitStrategy waitStrategy;
+    private final AtomicReferenceArray<E> buffer;
+    private final AtomicLongArray sequences;
+    private final AtomicLongArray indices = new AtomicLongArray(3 * PAD);
+    //Copied on every subscribe and unsubscribe, which are rare next to publishing
+    @SuppressWarnings("unchecked")
+    private final AtomicReference<Subscriber[]> subscribers =
+            new AtomicReference<>((Subscriber[]) new MulticastRing<?>.Subscriber[0]);
+    //Subscribers parked, so publishers only look for them to unpark when there are any
+    private final AtomicInteger sleepers = new AtomicInteger(0);
+
+    public MulticastRing(int capacity) {
+        this(capacity, OverflowPolicy.BLOCK, WaitStrategy.PARK);
+    }
+
+    //capacity is rounded up to a power of two. waitStrategy is how subscribers wait for messages.
+    public MulticastRing(int capacity, OverflowPolicy overflowPolicy, WaitStrategy waitStrategy) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException();
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        if (size <= 0)
+            throw new IllegalArgumentException();
+        mask = size - 1;
+        this.overflowPolicy = overflowPolicy;
+        this.waitStrategy = waitStrategy;
+        buffer = new AtomicReferenceArray<>(size);
+        sequences = new AtomicLongArray(size);
+        //Every slot starts a lap behind, as if its message was read long ago
+        for (int i = 0; i < size; i++)
+            sequences.set(i, i - size);
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    //Never waits. Returns false when the slowest subscriber is a lap behind, which only happens with BLOCK.
+    public boolean publish(E message) {
+        if (message == null)
+            throw new NullPointerException();
+        long seq = claim();
+        if (seq < 0)
+            return false;
+        write(seq, message);
+        return true;
+    }
+
+    //Waits up to timeout milliseconds for the slowest subscriber to make room, returns false if the timeout was reached
+    public boolean publish(E message, long timeout) throws InterruptedException {
+        if (publish(message))
+            return true;
+        if (Timeouts.noWait(timeout))
+            return false;
+
+        long limit = Timeouts.start(timeout);
+        for (long tries = 0; ; tries++) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            if (!waitStrategy.idle(tries))
+                LockSupport.parkNanos(this, PARK_NANOS);
+            if (publish(message))
+                return true;
+            if (Timeouts.isTimeout(Timeouts.remaining(limit)))
+                return false;
+        }
+    }
+
+    //Starts at the next message published. Only one thread at a time may read from a subscriber.
+    public Subscriber subscribe() {
+        Subscriber subscriber = new Subscriber();
+        subscriber.cursor.set(NEXT, indices.get(CURSOR));
+        while (true) {
+            Subscriber[] observed = subscribers.get();
+            Subscriber[] updated = Arrays.copyOf(observed, observed.length + 1);
+            updated[observed.length] = subscriber;
+            if (subscribers.compareAndSet(observed, updated))
+                break;
+        }
+        //Publishers that looked at the cursors before this one was in may still claim up to a lap ahead of what they
+        //saw, which is behind the sequence now, so starting from it nothing is overwritten before it's read
+        subscriber.cursor.set(NEXT, indices.get(CURSOR));
+        return subscriber;
+    }
+
+    //Claims the next sequence, or returns -1 if BLOCK and the slowest subscriber is a lap behind
+    long claim() {
+        if (overflowPolicy == OverflowPolicy.OVERWRITE)
+            return indices.getAndIncrement(CURSOR);
+        while (true) {
+            long seq = indices.get(CURSOR);
+            long wrap = seq - capacity();
+            if (wrap >= indices.get(GATING)) {
+                long gating = slowestCursor(seq);
+                indices.set(GATING, gating);
+                if (wrap >= gating)
+                    return -1;
+            }
+            if (indices.compareAndSet(CURSOR, seq, seq + 1))
+                return seq;
+        }
+    }
+
+    //Package-private, as is claim, so tests can write a slot a lap late
+    void write(long seq, E message) {
+        int index = (int) seq & mask;
+        //With BLOCK the slot was read by every subscriber, with OVERWRITE readers must see it's changing
+        if (overflowPolicy == OverflowPolicy.OVERWRITE && !own(index, seq))
+            return;
+        buffer.lazySet(index, message);
+        //A full write, so a subscriber about to park either sees the message, or is seen by the read of sleepers
+        sequences.set(index, seq);
+
+        if (sleepers.get() > 0) {
+            for (Subscriber subscriber : subscribers.get()) {
+                Thread th = subscriber.parked;
+                if (th != null)
+                    LockSupport.unpark(th);
+            }
+        }
+    }
+
+    //With OVERWRITE, publishers a lap apart may write the same slot at once. Each marks the slot WRITING with a CAS
+    //from an older sequence, so only one writes it at a time and its sequence only moves forward. Returns false when
+    //a publisher a lap ahead wrote it first, so the message was overwritten before it was in.
+    private boolean own(int index, long seq) {
+        for (long tries = 0; ; tries++) {
+            long observed = sequences.get(index);
+            if (observed == WRITING) {
+                //Maybe a publisher a lap behind, which must be done before this message goes in
+                WaitStrategy.YIELD.idle(tries);
+                continue;
+            }
+            if (observed > seq)
+                return false;
+            if (sequences.compareAndSet(index, observed, WRITING))
+                return true;
+        }
+    }
+
+    private long slowestCursor(long seq) {
+        long slowest = seq;
+        for (Subscriber subscriber : subscribers.get())
+            slowest = Math.min(slowest, subscriber.cursor.get(NEXT));
+        return slowest;
+    }
+
+    public class Subscriber {
+        private final AtomicLongArray cursor = new AtomicLongArray(2 * PAD);
+        private volatile Thread parked;
+        private long missed = 0;
+
+        //Never waits, returns null when there's no new message
+        public E poll() {
+            while (true) {
+                long next = cursor.getPlain(NEXT);
+                int index = (int) next & mask;
+                long seq = sequences.get(index);
+                if (seq == next) {
+                    E message = buffer.get(index);
+                    //Still the same message after reading it, so it wasn't overwritten meanwhile
+                    if (sequences.get(index) == next) {
+                        cursor.lazySet(NEXT, next + 1);
+                        return message;
+                    }
+                } else if (seq != WRITING && seq < next) {
+                    //Not published yet
+                    return null;
+                }
+                //Overwritten, or being written, which may be next itself
+                if (!skipLapped(next))
+                    return null;
+            }
+        }
+
+        //Waits up to timeout milliseconds for a message, returns null if the timeout was reached.
+        //Waits the way the ring's WaitStrategy says, and once it's time to park, a publisher unparks it.
+        public E take(long timeout) throws InterruptedException {
+            E message = poll();
+            if (message != null || Timeouts.noWait(timeout))
+                return message;
+
+            Thread th = Thread.currentThread();
+            long limit = Timeouts.start(timeout);
+            for (long tries = 0; ; tries++) {
+                if (Thread.interrupted())
+                    throw new InterruptedException();
+                long remaining = Timeouts.remaining(limit);
+                if (Timeouts.isTimeout(remaining))
+                    return null;
+                if (!waitStrategy.idle(tries)) {
+                    parked = th;
+                    sleepers.incrementAndGet();
+                    //A message published from now on unparks it, so look once more for one published before
+                    message = poll();
+                    if (message == null)
+                        LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(remaining));
+                    sleepers.decrementAndGet();
+                    parked = null;
+                    if (message != null)
+                        return message;
+                }
+                message = poll();
+                if (message != null)
+                    return message;
+            }
+        }
+
+        //Messages overwritten before this subscriber read them, with OVERWRITE
+        public long missed() {
+            return missed;
+        }
+
+        //Stops holding publishers back, with BLOCK
+        @SuppressWarnings("unchecked")
+        public void unsubscribe() {
+            while (true) {
+                Subscriber[] observed = subscribers.get();
+                int i = Arrays.asList(observed).indexOf(this);
+                if (i < 0)
+                    return;
+                Subscriber[] updated = (Subscriber[]) new MulticastRing<?>.Subscriber[observed.length - 1];
+                System.arraycopy(observed, 0, updated, 0, i);
+                System.arraycopy(observed, i + 1, updated, i, observed.length - i - 1);
+                if (subscribers.compareAndSet(observed, updated))
+                    return;
+            }
+        }
+
+        //Moves the cursor to the oldest message still in the ring, if the publishers are more than a lap ahead of it
+        private boolean skipLapped(long next) {
+            if (overflowPolicy != OverflowPolicy.OVERWRITE)
+                return false;
+            long oldest = indices.get(CURSOR) - capacity();
+            if (oldest <= next)
+                return false;
+            missed += oldest - next;
+            cursor.lazySet(NEXT, oldest);
+            return true;
+        }
+    }
+}
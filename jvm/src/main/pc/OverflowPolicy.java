@@ -0,0 +1,9 @@
+package pc;
+
+//What MulticastRing does with a new message when its slowest subscriber is a whole lap behind
+public enum OverflowPolicy {
+    //The publisher waits for the slowest subscriber. If the timeout is reached first, the message isn't published.
+    BLOCK,
+    //Publish over the oldest message, which subscribers that haven't read it yet miss
+    OVERWRITE
+}
@@ -0,0 +1,350 @@
+package pc;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+//A Result completed by whoever holds it, with complete or fail.
+//The outcome is published by a single CAS on state (null while not complete), so isComplete and get never
+//take a lock. Threads in get push themselves onto a lock-free stack of waiters and park until completion.
+//Continuations are kept in another lock-free stack, and run on the executor once the outcome is published.
+public class Promise<T> implements Result<T> {
+    private static final Callback<?> CLOSED = new Callback<>(null, null);
+
+    private final AtomicReference<Outcome<T>> state = new AtomicReference<>();
+    private final AtomicReference<Waiter> waiters = new AtomicReference<>();
+    private final AtomicReference<Callback<T>> callbacks = new AtomicReference<>();
+    private final Executor executor;
+
+    //Promise whose continuations run on the thread that completes it
+    public Promise() {
+        this(null);
+    }
+
+    //Promise whose continuations run on executor
+    public Promise(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public boolean isComplete() {
+        return state.get() != null;
+    }
+
+    @Override
+    public boolean tryCancel() {
+        return publish(Outcome.cancelled());
+    }
+
+    @Override
+    public Optional<T> get(int timeout) throws Exception {
+        Outcome<T> outcome = state.get();
+
+        //Await completion, unless not waiting was asked
+        if (outcome == null && !Timeouts.noWait(timeout))
+            outcome = awaitOutcome(timeout);
+
+        //Timeout reached
+        if (outcome == null)
+            return Optional.empty();
+
+        if (outcome.cancelled)
+            throw new CancellationException();
+        if (outcome.exception != null)
+            throw outcome.exception;
+        return Optional.ofNullable(outcome.result);
+    }
+
+    //Completes with result. Returns false if it was already complete.
+    public boolean complete(T result) {
+        return publish(Outcome.of(result));
+    }
+
+    //Completes with exception. Returns false if it was already complete.
+    public boolean fail(Exception exception) {
+        return publish(Outcome.failed(exception));
+    }
+
+    @Override
+    public void onComplete(BiConsumer<? super T, ? super Exception> action) {
+        addCallback(action, executor);
+    }
+
+    @Override
+    public <U> Result<U> thenApply(Function<? super T, ? extends U> fn) {
+        Promise<U> dependent = new Promise<>(executor);
+        onComplete((result, exception) -> {
+            if (exception != null) {
+                dependent.fail(exception);
+                return;
+            }
+            try {
+                dependent.complete(fn.apply(result));
+            } catch (Exception e) {
+                dependent.fail(e);
+            }
+        });
+        return dependent;
+    }
+
+    @Override
+    public <U> Result<U> thenCompose(Function<? super T, ? extends Result<U>> fn) {
+        Promise<U> dependent = new Promise<>(executor);
+        onComplete((result, exception) -> {
+            if (exception != null) {
+                dependent.fail(exception);
+                return;
+            }
+            try {
+                whenComplete(fn.apply(result), dependent::settle);
+            } catch (Exception e) {
+                dependent.fail(e);
+            }
+        });
+        return dependent;
+    }
+
+    //Completes with the values of every result, in order, once all are complete.
+    //Fails as soon as one of them fails, with that exception.
+    static <T> Promise<List<T>> allOf(Collection<? extends Result<? extends T>> results) {
+        Promise<List<T>> all = new Promise<>(executorOf(results));
+        if (results.isEmpty()) {
+            all.complete(Collections.emptyList());
+            return all;
+        }
+
+        Object[] values = new Object[results.size()];
+        AtomicInteger remaining = new AtomicInteger(values.length);
+        int index = 0;
+        for (Result<? extends T> result : results) {
+            int i = index++;
+            whenComplete(result, (value, exception) -> {
+                if (exception != null) {
+                    all.fail(exception);
+                } else {
+                    //The last one to decrement sees every value written before it
+                    values[i] = value;
+                    if (remaining.decrementAndGet() == 0)
+                        all.complete(toList(values));
+                }
+            });
+        }
+        return all;
+    }
+
+    //Completes like the first of the results to complete
+    static <T> Promise<T> anyOf(Collection<? extends Result<? extends T>> results) {
+        Promise<T> any = new Promise<>(executorOf(results));
+        for (Result<? extends T> result : results)
+            whenComplete(result, any::settle);
+        return any;
+    }
+
+    private boolean publish(Outcome<T> outcome) {
+        if (!state.compareAndSet(null, outcome))
+            return false;
+        releaseWaiters();
+        runCallbacks(outcome);
+        return true;
+    }
+
+    private void settle(T result, Exception exception) {
+        if (exception != null)
+            fail(exception);
+        else
+            complete(result);
+    }
+
+    //Internal continuations, that only complete other promises, run right away on the completing thread
+    @SuppressWarnings("unchecked")
+    static <V> void whenComplete(Result<V> result, BiConsumer<? super V, ? super Exception> action) {
+        if (result instanceof Promise)
+            ((Promise<V>) result).addCallback(action, null);
+        else
+            result.onComplete(action);
+    }
+
+    static Executor executorOf(Collection<? extends Result<?>> results) {
+        for (Result<?> result : results) {
+            if (result instanceof Promise && ((Promise<?>) result).executor != null)
+                return ((Promise<?>) result).executor;
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> toList(Object[] values) {
+        return (List<T>) Collections.unmodifiableList(Arrays.asList(values));
+    }
+
+    private Outcome<T> awaitOutcome(int timeout) throws InterruptedException {
+        Waiter waiter = new Waiter(Thread.currentThread());
+        do {
+            waiter.next = waiters.get();
+        } while (!waiters.compareAndSet(waiter.next, waiter));
+
+        long limit = Timeouts.start(timeout);
+        while (true) {
+            //See if it was completed, either before or after being added to the waiters
+            Outcome<T> outcome = state.get();
+            if (outcome != null)
+                return outcome;
+
+            //Leave if timeout reached
+            long remaining = Timeouts.remaining(limit);
+            if (Timeouts.isTimeout(remaining)) {
+                removeWaiter(waiter);
+                return null;
+            }
+
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(remaining));
+            if (Thread.interrupted()) {
+                removeWaiter(waiter);
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    //Unlinks the waiter, and any other that left, so polling a promise that stays incomplete doesn't pile them up.
+    //A waiter that left has no thread. Starts over whenever a concurrent push or removal changes the stack under it.
+    private void removeWaiter(Waiter waiter) {
+        waiter.thread = null;
+        boolean retry = true;
+        while (retry) {
+            retry = false;
+            Waiter pred = null;
+            for (Waiter q = waiters.get(); q != null && !retry; q = q.next) {
+                if (q.thread != null) {
+                    pred = q;
+                } else if (pred != null) {
+                    pred.next = q.next;
+                    //The predecessor left meanwhile, and may be unlinked itself
+                    retry = pred.thread == null;
+                } else {
+                    retry = !waiters.compareAndSet(q, q.next);
+                }
+            }
+        }
+    }
+
+    //Waiters on the stack, for tests
+    int waiterCount() {
+        int count = 0;
+        for (Waiter waiter = waiters.get(); waiter != null; waiter = waiter.next)
+            count++;
+        return count;
+    }
+
+    //Unpark every thread awaiting in get. Waiters added after this see the outcome before parking.
+    private void releaseWaiters() {
+        Waiter waiter = waiters.getAndSet(null);
+        while (waiter != null) {
+            Thread thread = waiter.thread;
+            if (thread != null)
+                LockSupport.unpark(thread);
+            waiter = waiter.next;
+        }
+    }
+
+    //Push the callback, or run it right away if the callbacks were already run
+    @SuppressWarnings("unchecked")
+    private void addCallback(BiConsumer<? super T, ? super Exception> action, Executor executor) {
+        Callback<T> callback = new Callback<>(action, executor);
+        while (true) {
+            Callback<T> head = callbacks.get();
+            if (head == CLOSED) {
+                callback.run(state.get());
+                return;
+            }
+            callback.next = head;
+            if (callbacks.compareAndSet(head, callback))
+                return;
+        }
+    }
+
+    //Close the stack, so late callbacks run by themselves, then run the pushed ones in the order they were added
+    @SuppressWarnings("unchecked")
+    private void runCallbacks(Outcome<T> outcome) {
+        Callback<T> callback = callbacks.getAndSet((Callback<T>) CLOSED);
+        Callback<T> reversed = null;
+        while (callback != null) {
+            Callback<T> next = callback.next;
+            callback.next = reversed;
+            reversed = callback;
+            callback = next;
+        }
+        for (; reversed != null; reversed = reversed.next)
+            reversed.run(outcome);
+    }
+
+    //The outcome of a Promise. Immutable, so publishing the reference publishes all of it.
+    private static class Outcome<V> {
+        private final V result;
+        private final Exception exception;
+        private final boolean cancelled;
+
+        private Outcome(V result, Exception exception, boolean cancelled) {
+            this.result = result;
+            this.exception = exception;
+            this.cancelled = cancelled;
+        }
+
+        static <V> Outcome<V> of(V result) {
+            return new Outcome<>(result, null, false);
+        }
+
+        static <V> Outcome<V> failed(Exception exception) {
+            return new Outcome<>(null, exception, false);
+        }
+
+        static <V> Outcome<V> cancelled() {
+            return new Outcome<>(null, null, true);
+        }
+    }
+
+    //A thread parked in get, or null once it left
+    private static class Waiter {
+        private volatile Thread thread;
+        private volatile Waiter next;
+
+        private Waiter(Thread thread) {
+            this.thread = thread;
+        }
+    }
+
+    //A continuation, and where it runs. A null executor means on the completing thread.
+    private static class Callback<V> {
+        private final BiConsumer<? super V, ? super Exception> action;
+        private final Executor executor;
+        private Callback<V> next;
+
+        private Callback(BiConsumer<? super V, ? super Exception> action, Executor executor) {
+            this.action = action;
+            this.executor = executor;
+        }
+
+        void run(Outcome<V> outcome) {
+            Exception exception = outcome.cancelled ? new CancellationException() : outcome.exception;
+            if (executor == null) {
+                //Don't let a failing continuation stop the others, report it as if it had ended the thread
+                try {
+                    action.accept(outcome.result, exception);
+                } catch (RuntimeException e) {
+                    Thread th = Thread.currentThread();
+                    th.getUncaughtExceptionHandler().uncaughtException(th, e);
+                }
+            } else
+                executor.execute(() -> action.accept(outcome.result, exception));
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package pc;
+
+//What ThreadPoolExecutor does with new work when every working thread is busy and the work queue is full
+public enum RejectionPolicy {
+    //Block the caller until there's room in the queue. If the timeout is reached first, the work is rejected.
+    BLOCK,
+    //Reject the work, throwing RejectedExecutionException
+    REJECT,
+    //Run the work on the caller thread, which slows down whoever is giving the work
+    CALLER_RUNS,
+    //Queue the work, discarding the oldest queued work, which fails with RejectedExecutionException
+    DROP_OLDEST
+}
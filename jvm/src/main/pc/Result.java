@@ -1,9 +1,29 @@
 package pc;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 public interface Result<T> {
     boolean isComplete();
     boolean tryCancel();
     Optional<T> get(int timeout) throws Exception;
+
+    //Runs action once complete, with the result or with the exception (CancellationException if cancelled).
+    //Continuations never block a thread while waiting, they run on the executor of the result once complete.
+    void onComplete(BiConsumer<? super T, ? super Exception> action);
+    <U> Result<U> thenApply(Function<? super T, ? extends U> fn);
+    <U> Result<U> thenCompose(Function<? super T, ? extends Result<U>> fn);
+
+    //Completes with every value, in order, once all results complete. Fails with the first exception.
+    static <T> Result<List<T>> allOf(Collection<? extends Result<? extends T>> results) {
+        return Promise.allOf(results);
+    }
+
+    //Completes like the first result to complete
+    static <T> Result<T> anyOf(Collection<? extends Result<? extends T>> results) {
+        return Promise.anyOf(results);
+    }
 }
@@ -0,0 +1,15 @@
+package pc;
+
+import java.util.concurrent.Callable;
+
+//Contract shared by the executors that give a Result for each work
+public interface ResultExecutor<T> {
+    //Give new work to be executed
+    Result<T> execute(Callable<T> command);
+
+    //Set to shutdown mode. Work already given is still executed, new work is rejected.
+    void shutdown();
+
+    //Await termination of every work given before shutdown
+    boolean awaitTermination(int timeout) throws InterruptedException;
+}
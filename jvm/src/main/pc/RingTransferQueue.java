@@ -0,0 +1,39 @@
+package pc;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+//Bounded SafeTransferQueue on a ring buffer allocated up front, so put and take allocate nothing.
+//SequencedRing hands out the slots, this queue only keeps the messages in them.
+public class RingTransferQueue<E> extends SequencedRing implements MessageQueue<E> {
+    private final AtomicReferenceArray<E> buffer;
+
+    //capacity is rounded up to a power of two
+    public RingTransferQueue(int capacity) {
+        super(capacity);
+        buffer = new AtomicReferenceArray<>(slots(capacity));
+    }
+
+    //Never waits, returns false when the queue is full
+    @Override
+    public boolean put(E message) {
+        long pos = claimPut();
+        if (pos < 0)
+            return false;
+        buffer.lazySet(index(pos), message);
+        published(pos);
+        return true;
+    }
+
+    //Never waits, returns null when the queue is empty
+    @Override
+    public E take() {
+        long pos = claimTake();
+        if (pos < 0)
+            return null;
+        int index = index(pos);
+        E message = buffer.get(index);
+        buffer.lazySet(index, null);
+        released(pos);
+        return message;
+    }
+}
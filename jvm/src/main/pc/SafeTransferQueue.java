@@ -1,17 +1,61 @@
 package pc;
 
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
-public class SafeTransferQueue<E> {
+public class SafeTransferQueue<E> implements MessageQueue<E> {
     Node<E> sentinel = new Node<E>(null);
     private final AtomicReference<Node<E>> head = new AtomicReference<>(sentinel);
     private final AtomicReference<Node<E>> tail = new AtomicReference<>(sentinel);
+    //Takers parked in take(timeout), as a Treiber stack. Puts only pay for a read of it while nobody is parked.
+    private final AtomicReference<Waiter> waiters = new AtomicReference<>(null);
+    private final WaitStrategy waitStrategy;
 
     public SafeTransferQueue() {
+        this(WaitStrategy.PARK);
     }
 
-    public void put(E message){
+    //How take(timeout) waits for a message
+    public SafeTransferQueue(WaitStrategy waitStrategy) {
+        this.waitStrategy = waitStrategy;
+    }
+
+    //Unbounded, so the message is always put
+    @Override
+    public boolean put(E message){
         Node<E> newTail = new Node<>(message);
+        append(newTail, newTail);
+        if(waiters.get() != null)
+            signal();
+        return true;
+    }
+
+    //Links the messages in a chain first, then appends the whole chain with a single CAS,
+    //so they come out in order, with no other message between them
+    public void putAll(Collection<? extends E> messages){
+        Node<E> first = null;
+        Node<E> last = null;
+        for (E message : messages) {
+            Node<E> node = new Node<>(message);
+            if (first == null)
+                first = node;
+            else
+                last.next.lazySet(node);
+            last = node;
+        }
+        if (first == null)
+            return;
+        append(first, last);
+        //A taker for each message, as long as there are takers parked
+        for (int i = 0; i < messages.size() && waiters.get() != null; i++)
+            signal();
+    }
+
+    //Appends the chain of nodes from first to newTail
+    private void append(Node<E> first, Node<E> newTail){
         while (true) {
             Node<E> observedTail = tail.get();
             Node<E> observedTailNext = observedTail.next.get();
@@ -21,7 +65,7 @@ public class SafeTransferQueue<E> {
                     boolean res = tail.compareAndSet(observedTail, observedTailNext);		/** step B **/
                 } else {
                     // queue in quiescent state, try inserting new node
-                    if (observedTail.next.compareAndSet(null, newTail)) {	/** step C **/
+                    if (observedTail.next.compareAndSet(null, first)) {	/** step C **/
                         // advance the tail
                         boolean res2 = tail.compareAndSet(observedTail, newTail);	/** step D **/
                         break;
@@ -31,6 +75,7 @@ public class SafeTransferQueue<E> {
         }
     }
 
+    @Override
     public E take(){
         while(true){
             Node<E> observedHead = head.get();
@@ -45,6 +90,145 @@ public class SafeTransferQueue<E> {
         }
     }
 
+    //Waits up to timeout milliseconds for a message, returns null if the timeout was reached.
+    //Waits the way the queue's WaitStrategy says, and once it's time to park, a put unparks it.
+    public E take(long timeout) throws InterruptedException{
+        E message = take();
+        if(message != null || Timeouts.noWait(timeout))
+            return message;
+
+        long limit = Timeouts.start(timeout);
+        for(long tries = 0; ; tries++){
+            if(Thread.interrupted())
+                throw new InterruptedException();
+            if(Timeouts.isTimeout(Timeouts.remaining(limit)))
+                return null;
+            if(!waitStrategy.idle(tries))
+                return await(limit);
+            message = take();
+            if(message != null)
+                return message;
+        }
+    }
+
+    //Parks until a put wakes it, and takes the message. Starts over when another taker got the message first.
+    private E await(long limit) throws InterruptedException{
+        while(true){
+            Waiter waiter = new Waiter(Thread.currentThread());
+            push(waiter);
+            //A put from now on wakes a waiter, so only a message put before the push can be missed
+            E message = take();
+            if(message != null){
+                leave(waiter);
+                return message;
+            }
+
+            while(!waiter.woken()){
+                long remaining = Timeouts.remaining(limit);
+                if(Timeouts.isTimeout(remaining)){
+                    leave(waiter);
+                    return take();
+                }
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(remaining));
+                if(Thread.interrupted()){
+                    leave(waiter);
+                    throw new InterruptedException();
+                }
+            }
+
+            message = take();
+            if(message != null)
+                return message;
+        }
+    }
+
+    private void push(Waiter waiter){
+        while(true){
+            Waiter observedTop = waiters.get();
+            waiter.next = observedTop;
+            if(waiters.compareAndSet(observedTop, waiter))
+                return;
+        }
+    }
+
+    //Wakes a waiter that hasn't left, dropping the ones that have on the way
+    private void signal(){
+        while(true){
+            Waiter observedTop = waiters.get();
+            if(observedTop == null)
+                return;
+            if(waiters.compareAndSet(observedTop, observedTop.next) && observedTop.claimed.compareAndSet(false, true)){
+                LockSupport.unpark(observedTop.thread);
+                return;
+            }
+        }
+    }
+
+    //Stops waiting. If a put woke it in the meantime, the wakeup goes to another waiter while there are messages,
+    //so it isn't lost.
+    private void leave(Waiter waiter){
+        if(waiter.claimed.compareAndSet(false, true)){
+            //Still on the stack, which puts clean up as they pass. Pops itself when on top, so takes timing out while
+            //nothing is put don't pile up.
+            waiters.compareAndSet(waiter, waiter.next);
+        } else if(head.get().next.get() != null){
+            signal();
+        }
+    }
+
+    //Takes up to max messages with a single CAS on head, and moves them to target.
+    //Returns how many were moved, 0 if there were none.
+    public int drainTo(Collection<? super E> target, int max){
+        while(true){
+            Node<E> observedHead = head.get();
+            Node<E> newHead = observedHead;
+            int count = 0;
+            Node<E> next;
+            while(count < max && (next = newHead.next.get()) != null){
+                newHead = next;
+                count++;
+            }
+            if(count == 0)
+                return 0;
+            if(head.compareAndSet(observedHead, newHead)) {
+                //The nodes from observedHead to newHead are ours now
+                for(Node<E> node = observedHead.next.get(); ; node = node.next.get()){
+                    target.add(node.data);
+                    if(node == newHead)
+                        return count;
+                }
+            }
+        }
+    }
+
+    //Waits up to timeout milliseconds for a message, the way take(timeout) does, then moves every message there is,
+    //up to max. Returns how many were moved, 0 if the timeout was reached.
+    public int drainTo(Collection<? super E> target, int max, long timeout) throws InterruptedException{
+        int count = drainTo(target, max);
+        if(count > 0 || max <= 0)
+            return count;
+        E first = take(timeout);
+        if(first == null)
+            return 0;
+        target.add(first);
+        return 1 + drainTo(target, max - 1);
+    }
+
+    //A parked taker. Claimed once, either by the put that wakes it, or by itself when it leaves.
+    private static class Waiter {
+        final Thread thread;
+        final AtomicBoolean claimed = new AtomicBoolean(false);
+        Waiter next;
+
+        Waiter(Thread thread) {
+            this.thread = thread;
+        }
+
+        boolean woken() {
+            return claimed.get();
+        }
+    }
+
     private static class Node<E> {
         final AtomicReference<Node<E>> next;
         final E data;
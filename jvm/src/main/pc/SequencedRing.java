@@ -0,0 +1,121 @@
+package pc;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+//The positions of a ring buffer allocated up front, for the bounded queues that keep the messages in an array of their
+//own type, so the ring is written once whatever the messages are.
+//Every slot has a sequence number that says whose turn it is (Vyukov's bounded MPMC queue): put may fill the slot
+//at position pos when its sequence is pos, and take may empty it when its sequence is pos + 1. Threads claim
+//positions with a CAS on the tail or the head, and hand the slot over by writing its next sequence.
+abstract class SequencedRing {
+    //Longs between the head and the tail, and around them, so they sit on cache lines of their own
+    private static final int PAD = 16;
+    private static final int HEAD = PAD;
+    private static final int TAIL = 2 * PAD;
+    //Times a timed put or take yields before it starts parking
+    private static final int YIELDS = 64;
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final int mask;
+    private final int capacity;
+    private final AtomicLongArray sequences;
+    private final AtomicLongArray indices = new AtomicLongArray(3 * PAD);
+
+    //capacity is rounded up to a power of two, except for 1. With a single slot, the sequence take leaves for the put
+    //a lap ahead would be the one put leaves for take, so the ring has two slots, and put looks at the head instead.
+    SequencedRing(int capacity) {
+        int size = slots(capacity);
+        mask = size - 1;
+        this.capacity = capacity == 1 ? 1 : size;
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++)
+            sequences.set(i, i);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    //Messages in the queue, which may be stale as soon as it's returned
+    public int size() {
+        while (true) {
+            long head = indices.get(HEAD);
+            long tail = indices.get(TAIL);
+            if (head == indices.get(HEAD))
+                return (int) Math.max(0, Math.min(tail - head, capacity));
+        }
+    }
+
+    //Slots in the ring for capacity messages, which is also the length of the subclass's buffer.
+    //Static, so subclasses size their buffer in their constructor without calling into a half built object.
+    static int slots(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException();
+        int size = capacity == 1 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        if (size <= 0)
+            throw new IllegalArgumentException();
+        return size;
+    }
+
+    final int index(long pos) {
+        return (int) pos & mask;
+    }
+
+    //Claims the position of a put, or returns -1 when the queue is full.
+    //The caller fills the slot at index(pos), then hands it to take with published(pos).
+    final long claimPut() {
+        long pos = indices.get(TAIL);
+        while (true) {
+            long dif = sequences.get(index(pos)) - pos;
+            if (dif == 0) {
+                //Fewer messages than slots, so the slot being free doesn't mean there's room
+                if (capacity <= mask && pos - indices.get(HEAD) >= capacity)
+                    return -1;
+                if (indices.compareAndSet(TAIL, pos, pos + 1))
+                    return pos;
+            } else if (dif < 0) {
+                //The slot still holds the message from a lap ago
+                return -1;
+            }
+            pos = indices.get(TAIL);
+        }
+    }
+
+    final void published(long pos) {
+        sequences.lazySet(index(pos), pos + 1);
+    }
+
+    //Claims the position of a take, or returns -1 when the queue is empty.
+    //The caller reads the slot at index(pos), then hands it to the put a lap ahead with released(pos).
+    final long claimTake() {
+        long pos = indices.get(HEAD);
+        while (true) {
+            long dif = sequences.get(index(pos)) - (pos + 1);
+            if (dif == 0) {
+                if (indices.compareAndSet(HEAD, pos, pos + 1))
+                    return pos;
+            } else if (dif < 0) {
+                //Nothing put at pos yet
+                return -1;
+            }
+            pos = indices.get(HEAD);
+        }
+    }
+
+    final void released(long pos) {
+        sequences.lazySet(index(pos), pos + mask + 1);
+    }
+
+    //Nobody is woken when a slot changes, so threads in a timed put or take yield for a while, then park for short
+    //periods
+    static void backOff(int tries) throws InterruptedException {
+        if (Thread.interrupted())
+            throw new InterruptedException();
+        if (tries < YIELDS)
+            Thread.yield();
+        else
+            LockSupport.parkNanos(PARK_NANOS);
+    }
+}
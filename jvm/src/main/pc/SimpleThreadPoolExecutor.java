@@ -1,199 +1,491 @@
 package pc;
 
-import java.util.LinkedList;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 
+//Free working threads wait in a lock-free stack, and submitters waiting for a free thread in a lock-free queue.
+//Every thread parks by itself, so handing a command to an idle working thread takes no lock: the submitter pops it
+//and unparks it. A working thread that finishes its command serves the oldest waiting submitter first, and only
+//goes to the free stack if there is none. The lock is only used to await termination.
+//Up to corePoolSize idle working threads stay alive past keepAliveTime. In adaptive mode, how many threads the pool
+//may grow to moves between corePoolSize and maxPoolSize, by hill climbing on the measured throughput.
 public class SimpleThreadPoolExecutor {
+    //Command of a working thread that left the pool. A free working thread has none.
+    private static final Runnable RETIRED = () -> { };
+
+    //States of a waiting submitter
+    private static final int WAITING = 0;
+    private static final int SERVED = 1;
+    private static final int WITHDRAWN = 2;
+
+    //How often, in milliseconds, the adaptive pool limit is adjusted, and by how much throughput has to change
+    //between two adjustments for the last step to be taken as better or worse
+    public static final int ADJUST_INTERVAL = 250;
+    private static final double THROUGHPUT_THRESHOLD = 0.05;
+
     private final int keepAliveTime;
+    private final int corePoolSize;
     private final int maxPoolSize;
-    private int poolSize = 0;
+    private final AtomicInteger poolSize = new AtomicInteger();
+    private final AtomicInteger activeThreads = new AtomicInteger();
+    private final AtomicInteger waitingSubmitters = new AtomicInteger();
+    private final AtomicReference<FreeNode> freeWorkingThreads = new AtomicReference<>();
+    private final ConcurrentLinkedQueue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+    private volatile boolean isShuttingDown = false;
     private final Lock mon = new ReentrantLock();
     private final Condition shuttingCond = mon.newCondition();
-    private final LinkedList<Condition> conds = new LinkedList<>();
-    private final LinkedList<WorkingThreadContainer> freeWorkingThreads = new LinkedList<>();
-    private boolean isShuttingDown = false;
-    private boolean isWaitingForShutdown = false;
 
+    //The queue wait of a command is how long execute took to hand it to a working thread.
+    //The submitters waiting for a free working thread are the queue.
+    private final ExecutorMetrics metrics = new ExecutorMetrics(waitingSubmitters::get);
+
+    //Submitters that had to wait for a free working thread, and for how long, for the stats and the pool limit
+    private final LongAdder waitedCount = new LongAdder();
+    private final LongAdder waitTime = new LongAdder();
+
+    //Hill climbing controller. The pool limit moves a thread at a time: on while throughput improves, and back
+    //when it doesn't. When no submitter had to wait, the pool has more threads than it needs, and the limit goes down.
+    //Only the thread holding adjustLock adjusts, the others skip it.
+    private final boolean adaptive;
+    private volatile int poolLimit;
+    private volatile long nextAdjustTime;
+    private final Lock adjustLock = new ReentrantLock();
+    private long lastAdjustTime;
+    private long lastCompletedCount;
+    private long lastWaitedCount;
+    private double lastThroughput = 0;
+    private int lastStep = 0;
+
+    //The command is set by CAS from null, so a free working thread takes a single one, even if it is
+    //in the free stack more than once, and it can no longer take one once it left
     private class WorkingThreadContainer {
-        Thread th;
-        boolean hasNewCommand = false;
-        boolean threadDone = true;
-        Runnable command;
-        private final Lock threadMon = new ReentrantLock();
-        private final Condition threadCond = threadMon.newCondition();
-
-        public WorkingThreadContainer(int keepAliveTime) {
+        final Thread th;
+        final AtomicReference<Runnable> command;
+
+        public WorkingThreadContainer(Runnable command) {
+            this.command = new AtomicReference<>(command);
+            //run the command this working thread was created for, then the ones it is handed
             this.th = new Thread(() -> {
+                boolean left = false;
                 try {
-                    threadMon.lock();
-
-                    //run the command this working thread was created for
-                    command.run();
-                    hasNewCommand = false;
-                    boolean keepGoing = true;
-                    while (keepGoing) {
-
-                        //after it's done, put itself in the free list
-                        addToFreeList();
-
-                        //wait until timeout or a new command notifies it
-                        try {
-                            threadCond.await(keepAliveTime, TimeUnit.MILLISECONDS);
-                        } catch (InterruptedException e) {
-                            e.printStackTrace();
-                        }
-
-                        //if there's a new command, run it
-                        if (hasNewCommand) {
-                            hasNewCommand = false;
-                            command.run();
-                            //if there's not, proceed to end the thread
-                        } else {
-                            keepGoing = false;
-                        }
-                    }
-                    threadDone = true;
-                    decreasePool();
-                }finally {
-                    threadMon.unlock();
+                    do {
+                        runCommand();
+                    } while (awaitCommand());
+                    left = true;
+                } finally {
+                    //An Error from a command ends the working thread, which still gives up its place in the pool.
+                    //Its command stays set, so no submitter can hand it another one.
+                    if (!left)
+                        leavePool(0);
                 }
             });
         }
 
-        private void decreasePool() {
+        private void runCommand() {
+            activeThreads.incrementAndGet();
+            long start = System.nanoTime();
+            boolean success = false;
             try {
-                mon.lock();
-                poolSize--;
-                //if there's a thread waiting for every working thread to finish, notify it telling this working thread has finished
-                if(isWaitingForShutdown) {
-                    shuttingCond.signal();
-                }
+                command.get().run();
+                success = true;
+            } catch (RuntimeException e) {
+                //Don't let a failing command end the working thread, report it as if it had
+                th.getUncaughtExceptionHandler().uncaughtException(th, e);
             } finally {
-                mon.unlock();
+                metrics.finished(System.nanoTime() - start, success);
+                activeThreads.decrementAndGet();
             }
+            adjustPoolLimit();
         }
 
-        private void addToFreeList() {
-            try {
-                mon.lock();
-                freeWorkingThreads.add(this);
-                //notify the first condition in the list that a new working thread was placed in the free threads list
-                if (!conds.isEmpty())
-                    conds.getFirst().signal();
-            } finally {
-                mon.unlock();
+        //Make itself free, then park until a command is assigned. Returns false if it left the pool:
+        //on shutdown, while the pool is above its limit, or on keepAliveTime timeout while above the core size.
+        private boolean awaitCommand() {
+            int floor = isShuttingDown ? 0 : poolLimit;
+            if (poolSize.get() > floor && leavePool(floor))
+                return false;
+            command.set(null);
+            releaseWorkingThread(this);
+
+            long limit = Timeouts.start(keepAliveTime);
+            while (command.get() == null) {
+                long remaining = Timeouts.remaining(limit);
+                boolean timedOut = Timeouts.isTimeout(remaining);
+                floor = isShuttingDown ? 0 : timedOut ? corePoolSize : poolLimit;
+                if (poolSize.get() > floor) {
+                    //If a submitter assigned a command meanwhile, it can no longer leave
+                    if (!command.compareAndSet(null, RETIRED))
+                        return true;
+                    if (leavePool(floor))
+                        return false;
+
+                    //Other threads left first and the pool is down to floor, so this one stays. Make itself free again.
+                    command.set(null);
+                    releaseWorkingThread(this);
+                }
+                if (timedOut) {
+                    limit = Timeouts.start(keepAliveTime);
+                    remaining = keepAliveTime;
+                }
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(remaining));
             }
+            return true;
         }
 
-        public void addCommand(Runnable command){
-            this.command = command;
-            hasNewCommand = true;
+        //Returns false if it left the pool, or another submitter got to it first
+        public boolean assignCommand(Runnable command) {
+            if (!this.command.compareAndSet(null, command))
+                return false;
+            LockSupport.unpark(th);
+            return true;
         }
 
-        public void start(){
-            threadDone = false;
+        public void start() {
             th.start();
         }
     }
 
+    //Node of the free stack. A new one is pushed every time, so a popping thread can't be fooled by a
+    //working thread that left and came back to the top of the stack meanwhile (ABA).
+    private class FreeNode {
+        final WorkingThreadContainer workingThread;
+        FreeNode next;
+
+        FreeNode(WorkingThreadContainer workingThread) {
+            this.workingThread = workingThread;
+        }
+    }
+
+    //A submitter parked until a working thread is free
+    private static class Waiter {
+        final Thread thread = Thread.currentThread();
+        final AtomicInteger state = new AtomicInteger(WAITING);
+        volatile WorkingThreadContainer workingThread;
+    }
+
+    //Live stats of the pool, taken at a single point in time
+    public static class Stats {
+        private final int poolSize;
+        private final int activeThreads;
+        private final int poolLimit;
+        private final int waitingSubmitters;
+        private final long submittedCommands;
+        private final long completedCommands;
+        private final double averageWaitTime;
+
+        private Stats(int poolSize, int activeThreads, int poolLimit, int waitingSubmitters,
+                      long submittedCommands, long completedCommands, double averageWaitTime) {
+            this.poolSize = poolSize;
+            this.activeThreads = activeThreads;
+            this.poolLimit = poolLimit;
+            this.waitingSubmitters = waitingSubmitters;
+            this.submittedCommands = submittedCommands;
+            this.completedCommands = completedCommands;
+            this.averageWaitTime = averageWaitTime;
+        }
+
+        //Alive working threads, running a command or idle
+        public int getPoolSize() {
+            return poolSize;
+        }
+
+        public int getActiveThreads() {
+            return activeThreads;
+        }
+
+        public int getIdleThreads() {
+            return Math.max(0, poolSize - activeThreads);
+        }
+
+        //How many threads the pool may grow to, maxPoolSize unless adaptive
+        public int getPoolLimit() {
+            return poolLimit;
+        }
+
+        //Submitters waiting in execute for a free working thread
+        public int getWaitingSubmitters() {
+            return waitingSubmitters;
+        }
+
+        public long getSubmittedCommands() {
+            return submittedCommands;
+        }
+
+        public long getCompletedCommands() {
+            return completedCommands;
+        }
+
+        //Average time, in milliseconds, of the submitters that had to wait for a free working thread
+        public double getAverageWaitTime() {
+            return averageWaitTime;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{poolSize=" + poolSize + ", activeThreads=" + activeThreads + ", poolLimit=" + poolLimit +
+                    ", waitingSubmitters=" + waitingSubmitters + ", submittedCommands=" + submittedCommands +
+                    ", completedCommands=" + completedCommands + ", averageWaitTime=" + averageWaitTime + "}";
+        }
+    }
+
     public SimpleThreadPoolExecutor(int maxPoolSize, int keepAliveTime){
+        this(0, maxPoolSize, keepAliveTime, false);
+    }
+
+    //Keeps corePoolSize working threads alive while idle. If adaptive, the pool limit starts at corePoolSize
+    //(or 1) and is adjusted every ADJUST_INTERVAL, up to maxPoolSize.
+    public SimpleThreadPoolExecutor(int corePoolSize, int maxPoolSize, int keepAliveTime, boolean adaptive){
+        if (corePoolSize < 0 || maxPoolSize <= 0 || corePoolSize > maxPoolSize)
+            throw new IllegalArgumentException();
+        this.corePoolSize = corePoolSize;
         this.maxPoolSize = maxPoolSize;
         this.keepAliveTime = keepAliveTime;
+        this.adaptive = adaptive;
+        this.poolLimit = adaptive ? Math.max(corePoolSize, 1) : maxPoolSize;
+        this.lastAdjustTime = System.nanoTime();
+        this.nextAdjustTime = lastAdjustTime + TimeUnit.MILLISECONDS.toNanos(ADJUST_INTERVAL);
     }
+
+    //Run command on a free working thread, or a new one if the pool isn't full, waiting up to timeout for one.
+    //Returns false if no working thread was free before the timeout.
     public boolean execute(Runnable command, int timeout) throws InterruptedException, RejectedExecutionException {
-        Condition cond = null;
+        metrics.submitted();
+        long start = System.nanoTime();
+        boolean handed = false;
         try {
-            mon.lock();
-            cond = mon.newCondition();
-            conds.add(cond);
-            if(isShuttingDown){
-                throw new RejectedExecutionException();
-            }
+            handed = handOff(command, timeout);
+        } finally {
+            //Timed out, interrupted, or shutting down
+            if (handed)
+                metrics.started(System.nanoTime() - start);
+            else
+                metrics.rejected();
+        }
+        return handed;
+    }
 
+    private boolean handOff(Runnable command, int timeout) throws InterruptedException {
+        if (isShuttingDown)
+            throw new RejectedExecutionException();
+
+        long limit = Timeouts.start(timeout);
+        while (true) {
             //happy path = at least one free thread
-            if (freeWorkingThreads.isEmpty()){
-                //if no free threads see if one can be created
-                if(poolSize < maxPoolSize) {
-                    freeWorkingThreads.add(new WorkingThreadContainer(keepAliveTime));
-
-                    //if neither, go to wait
-                } else {
-                    try {
-                        cond.await(timeout, TimeUnit.MILLISECONDS);
-                    } catch (InterruptedException e){
-                        throw e;
-                    }
-                }
+            if (assignToFree(command))
+                return true;
+
+            //if no free threads see if one can be created
+            if (reservePoolSlot()) {
+                new WorkingThreadContainer(command).start();
+                return true;
             }
-            //if no free threads are open even after waiting it out, return false
-            if(freeWorkingThreads.isEmpty()) {
+
+            //if neither, go to wait
+            adjustPoolLimit();
+            WorkingThreadContainer served = awaitFree(limit);
+            if (served == null)
+                return false;
+            if (served.assignCommand(command))
+                return true;
+            //The working thread it was handed timed out meanwhile, try again
+        }
+    }
+
+    //Pop free working threads until one takes the command. Returns false if the stack ran out.
+    private boolean assignToFree(Runnable command) {
+        FreeNode node;
+        while ((node = popFree()) != null) {
+            if (node.workingThread.assignCommand(command))
+                return true;
+        }
+        return false;
+    }
+
+    private boolean reservePoolSlot() {
+        int size;
+        do {
+            size = poolSize.get();
+            if (size >= poolLimit)
                 return false;
+        } while (!poolSize.compareAndSet(size, size + 1));
+        return true;
+    }
+
+    //Park in the waiters queue until a working thread is handed over, the timeout is reached, or the pool shuts down.
+    //Returns null if it left without one.
+    private WorkingThreadContainer awaitFree(long limit) throws InterruptedException {
+        long start = System.nanoTime();
+        waitingSubmitters.incrementAndGet();
+        try {
+            return awaitServed(limit);
+        } finally {
+            waitingSubmitters.decrementAndGet();
+            waitedCount.increment();
+            waitTime.add(System.nanoTime() - start);
+        }
+    }
+
+    private WorkingThreadContainer awaitServed(long limit) throws InterruptedException {
+        Waiter waiter = new Waiter();
+        waiters.offer(waiter);
+
+        //A working thread may have gone to the free stack before seeing this waiter
+        FreeNode node = popFree();
+        if (node != null) {
+            if (withdraw(waiter))
+                return node.workingThread;
+            releaseWorkingThread(node.workingThread);
+        }
+
+        while (waiter.state.get() == WAITING) {
+            long remaining = Timeouts.remaining(limit);
+            boolean interrupted = Thread.interrupted();
+            if (Timeouts.isTimeout(remaining) || isShuttingDown || interrupted) {
+                if (withdraw(waiter)) {
+                    if (interrupted)
+                        throw new InterruptedException();
+                    if (isShuttingDown)
+                        throw new RejectedExecutionException();
+                    return null;
+                }
+                //Served meanwhile. If interrupted, give the working thread back to someone else.
+                if (interrupted) {
+                    releaseWorkingThread(waiter.workingThread);
+                    throw new InterruptedException();
+                }
+                break;
+            }
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(remaining));
+        }
+        return waiter.workingThread;
+    }
+
+    //Returns false if a working thread was handed to the waiter first
+    private static boolean withdraw(Waiter waiter) {
+        return waiter.state.compareAndSet(WAITING, WITHDRAWN);
+    }
+
+    //Hand a free working thread to the oldest waiting submitter, or put it in the free stack if there is none
+    private void releaseWorkingThread(WorkingThreadContainer workingThread) {
+        Waiter waiter;
+        while ((waiter = waiters.poll()) != null) {
+            waiter.workingThread = workingThread;
+            if (waiter.state.compareAndSet(WAITING, SERVED)) {
+                LockSupport.unpark(waiter.thread);
+                return;
             }
+        }
+        pushFree(workingThread);
+    }
+
+    private void pushFree(WorkingThreadContainer workingThread) {
+        FreeNode node = new FreeNode(workingThread);
+        do {
+            node.next = freeWorkingThreads.get();
+        } while (!freeWorkingThreads.compareAndSet(node.next, node));
+    }
+
+    private FreeNode popFree() {
+        FreeNode node;
+        do {
+            node = freeWorkingThreads.get();
+            if (node == null)
+                return null;
+        } while (!freeWorkingThreads.compareAndSet(node, node.next));
+        return node;
+    }
 
-            //get the oldest free thread
-            WorkingThreadContainer ths = freeWorkingThreads.getFirst();
-            freeWorkingThreads.removeFirst();
+    //Leave the pool, unless that would take it down to floor threads or fewer. Returns false if it has to stay.
+    private boolean leavePool(int floor) {
+        int size;
+        do {
+            size = poolSize.get();
+            if (size <= floor)
+                return false;
+        } while (!poolSize.compareAndSet(size, size - 1));
+
+        //if there's a thread waiting for every working thread to finish, notify it that the last one has finished
+        if (size == 1) {
             try {
-                ths.threadMon.lock();
-                //add this thread's command to the working thread
-                ths.addCommand(command);
-
-                //check if the working thread was just waiting or shut down
-                if (ths.threadDone) {
-                    ths.start();
-                    poolSize++;
-                } else {
-                    ths.threadCond.signal();
-                }
+                mon.lock();
+                shuttingCond.signalAll();
             } finally {
-                ths.threadMon.unlock();
+                mon.unlock();
             }
-            return true;
-        } finally {
-            conds.remove(cond);
-            mon.unlock();
         }
+        return true;
     }
-    public void Shutdown(){
-        try{
-            mon.lock();
-            isShuttingDown = true;
 
-            //notify all the waiting working threads so they can end
-            for (WorkingThreadContainer th : freeWorkingThreads) {
-                try {
-                    th.threadMon.lock();
-                    if(!th.threadDone)
-                        th.threadCond.signal();
-                } finally {
-                    th.threadMon.unlock();
-                }
+    //One hill climbing step, if ADJUST_INTERVAL has passed since the last one
+    private void adjustPoolLimit() {
+        if (!adaptive || System.nanoTime() < nextAdjustTime || !adjustLock.tryLock())
+            return;
+        try {
+            long now = System.nanoTime();
+            if (now < nextAdjustTime)
+                return;
+            nextAdjustTime = now + TimeUnit.MILLISECONDS.toNanos(ADJUST_INTERVAL);
+
+            long completed = metrics.completedCount();
+            long waited = waitedCount.sum();
+            double throughput = (double) (completed - lastCompletedCount) / (now - lastAdjustTime);
+            int step;
+            if (waited == lastWaitedCount && waitingSubmitters.get() == 0) {
+                //Nobody waited for a thread, there are enough of them
+                step = -1;
+            } else if (lastStep == 0) {
+                step = 1;
+            } else if (throughput > lastThroughput * (1 + THROUGHPUT_THRESHOLD)) {
+                //The last step helped, take another one the same way
+                step = lastStep;
+            } else {
+                //It made it worse, or didn't make a difference worth the threads, so go back
+                step = -lastStep;
             }
+
+            int limit = Math.max(Math.max(corePoolSize, 1), Math.min(maxPoolSize, poolLimit + step));
+            lastStep = limit - poolLimit;
+            poolLimit = limit;
+            lastAdjustTime = now;
+            lastCompletedCount = completed;
+            lastWaitedCount = waited;
+            lastThroughput = throughput;
         } finally {
-            mon.unlock();
+            adjustLock.unlock();
         }
     }
+
+    public void Shutdown(){
+        isShuttingDown = true;
+
+        //wake up all the free working threads so they can end, and the waiting submitters so they are rejected
+        FreeNode node = freeWorkingThreads.getAndSet(null);
+        for (; node != null; node = node.next)
+            LockSupport.unpark(node.workingThread.th);
+        for (Waiter waiter : waiters)
+            LockSupport.unpark(waiter.thread);
+    }
+
     public boolean awaitTermination(int timeout) throws InterruptedException{
         try{
             mon.lock();
             long limit = Timeouts.start(timeout);
-            while (poolSize != 0){
-                long remaining = Timeouts.remaining(limit);
-                isWaitingForShutdown = true;
 
-                //wait until every working thread has ended (poolSize = 0)
-                try {
-                    shuttingCond.await(remaining, TimeUnit.MILLISECONDS);
-                } catch (InterruptedException e){
-                    throw e;
-                }
+            //wait until every working thread has ended (poolSize = 0)
+            while (poolSize.get() != 0){
+                long remaining = Timeouts.remaining(limit);
                 if(Timeouts.isTimeout(remaining)){
                     return false;
                 }
+                shuttingCond.await(remaining, TimeUnit.MILLISECONDS);
             }
             return true;
         } finally {
@@ -203,6 +495,19 @@ public class SimpleThreadPoolExecutor {
 
     //for testing purposes
     public int getPoolSize(){
-        return poolSize;
+        return poolSize.get();
+    }
+
+    public Stats getStats() {
+        ExecutorMetrics.Snapshot snapshot = metrics.snapshot();
+        long waited = waitedCount.sum();
+        double averageWaitTime = waited == 0 ? 0 : (double) waitTime.sum() / waited / TimeUnit.MILLISECONDS.toNanos(1);
+        return new Stats(poolSize.get(), activeThreads.get(), poolLimit, waitingSubmitters.get(),
+                snapshot.getSubmitted(), snapshot.getCompleted(), averageWaitTime);
+    }
+
+    //Counters, waiting submitters, and histograms of queue wait and run time, read without stopping the working threads
+    public ExecutorMetrics.Snapshot getMetrics() {
+        return metrics.snapshot();
     }
 }
@@ -0,0 +1,75 @@
+package pc;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+//Bounded queue for a single thread putting and a single thread taking, on a ring buffer like RingTransferQueue.
+//With a single owner for each index there's nothing to CAS: each side reads the other's index, and publishes its
+//own with an ordered write (lazySet) after the slot is written. Each side also keeps a cached copy of the other's
+//index, and only reads the real one when the cache says the ring is full or empty, so most operations touch no
+//cache line the other side writes.
+public class SpscTransferQueue<E> implements MessageQueue<E> {
+    //Longs between the producer's and the consumer's indices, and around them, so they sit on cache lines of their own
+    private static final int PAD = 16;
+    //Written by the producer only
+    private static final int TAIL = PAD;
+    private static final int HEAD_CACHE = PAD + 1;
+    //Written by the consumer only
+    private static final int HEAD = 2 * PAD;
+    private static final int TAIL_CACHE = 2 * PAD + 1;
+
+    private final int mask;
+    private final AtomicReferenceArray<E> buffer;
+    private final AtomicLongArray indices = new AtomicLongArray(3 * PAD);
+
+    //capacity is rounded up to a power of two
+    public SpscTransferQueue(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException();
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        if (size <= 0)
+            throw new IllegalArgumentException();
+        mask = size - 1;
+        buffer = new AtomicReferenceArray<>(size);
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    //Only called by the producer
+    @Override
+    public boolean put(E message) {
+        long tail = indices.getPlain(TAIL);
+        long wrap = tail - capacity();
+        if (wrap >= indices.getPlain(HEAD_CACHE)) {
+            long head = indices.get(HEAD);
+            indices.setPlain(HEAD_CACHE, head);
+            if (wrap >= head)
+                return false;
+        }
+        int index = (int) tail & mask;
+        buffer.lazySet(index, message);
+        //Publishes the message along with the new tail
+        indices.lazySet(TAIL, tail + 1);
+        return true;
+    }
+
+    //Only called by the consumer
+    @Override
+    public E take() {
+        long head = indices.getPlain(HEAD);
+        if (head >= indices.getPlain(TAIL_CACHE)) {
+            long tail = indices.get(TAIL);
+            indices.setPlain(TAIL_CACHE, tail);
+            if (head >= tail)
+                return null;
+        }
+        int index = (int) head & mask;
+        E message = buffer.getPlain(index);
+        buffer.setPlain(index, null);
+        //Frees the slot along with the new head
+        indices.lazySet(HEAD, head + 1);
+        return message;
+    }
+}
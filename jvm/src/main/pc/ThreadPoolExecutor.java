@@ -1,62 +1,257 @@
 package pc;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedList;
-import java.util.Optional;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
-public class ThreadPoolExecutor<T> {
+//Work is handed directly from execute() to an awaiting Working Thread, or to a new one if the pool isn't full.
+//Only when every Working Thread is busy it is queued, and then taken by the next thread that finishes its work.
+public class ThreadPoolExecutor<T> implements ResultExecutor<T> {
+    //Priorities of work, each with its own lane in the work queue. Lower is more urgent.
+    public static final int HIGH_PRIORITY = 0;
+    public static final int NORMAL_PRIORITY = 1;
+    public static final int LOW_PRIORITY = 2;
+    public static final int PRIORITY_LANES = 3;
+
+    //Every AGING_TIME milliseconds a queued work waits, it is taken as if it were one lane more urgent,
+    //so a flood of urgent work never starves the rest
+    public static final int AGING_TIME = 1000;
+
+    //Resolution of the timer of scheduled work, in milliseconds, and how many ticks a turn of its wheel has
+    public static final int TIMER_TICK = 10;
+    private static final int TIMER_WHEEL_SIZE = 512;
+
     private final int maxPoolSize;
     private final int keepAliveTime;
     private final Lock queueLock = new ReentrantLock();
-    private final Lock threadLock = new ReentrantLock();
-    private final Lock aliveLock = new ReentrantLock();
-    private final Condition checkWorkThreadCond;
-    private final Condition aliveThreadCond;
-    private final LinkedList<Work> workQueue = new LinkedList<>();
+    private final Condition aliveThreadCond = queueLock.newCondition();
+    private final PriorityWorkQueue workQueue = new PriorityWorkQueue();
     private final LinkedList<WorkingThread> waitingThreadQueue = new LinkedList<>();
-    private final LinkedList<WorkingThread> aliveThreadQueue = new LinkedList<>();
-    private boolean isShutdown = false;
+    private volatile int poolSize = 0;
+    private volatile boolean isShutdown = false;
+
+    //Bounded work queue. When it is full, new work is handled by the rejection policy.
+    //Work pushed to the deques in work stealing mode, continuations of results and scheduled work are never bounded.
+    private final int queueCapacity;
+    private final RejectionPolicy rejectionPolicy;
+    private final int blockTimeout;
+    private final Condition notFullCond = queueLock.newCondition();
+    private final AtomicLongArray rejectionCounts = new AtomicLongArray(RejectionPolicy.values().length);
+    private int blockedSubmitters = 0;
+
+    //Work stealing mode. Each working thread owns a deque, work submitted from inside a working thread goes to
+    //its own deque, and idle working threads steal from the other deques before going to await.
+    private final boolean workStealing;
+    private final CopyOnWriteArrayList<WorkingThread> stealableThreads = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<WorkingThread> currentThread = new ThreadLocal<>();
+    private volatile int waitingThreads = 0;
+
+    //Per lane wait time in nanoseconds, from execute until the work starts running
+    private final LongAdder[] laneWaitTime = newAdders(PRIORITY_LANES);
+    private final LongAdder[] laneWaitCount = newAdders(PRIORITY_LANES);
+    private final AtomicLongArray laneMaxWaitTime = new AtomicLongArray(PRIORITY_LANES);
+
+    //Every work submitted, continuations and runs of periodic work included
+    private final ExecutorMetrics metrics = new ExecutorMetrics(() -> workQueue.size());
+
+    //Continuations of results run as work on the pool
+    private final Executor continuationExecutor = this::executeContinuation;
+
+    //Delayed and periodic work waits in a single timing wheel, whose thread only starts with the first schedule
+    private final TimingWheel timer = new TimingWheel(TIMER_TICK, TIMER_WHEEL_SIZE);
 
     //Represents work to be executed or work already executed.
-    private class Work implements Result {
+    private class Work<V> extends Promise<V> {
 
-        private final Callable<T> command;
-        private boolean complete;
-        private T result;
-        private Exception exception;
+        protected final Callable<V> command;
+        private final int priority;
+        protected long submitTime = System.nanoTime();
+        private final AtomicReference<Thread> runner = new AtomicReference<>();
+        private volatile boolean interruptDone = false;
 
-        public Work(Callable<T> command) {
+        public Work(Callable<V> command, int priority) {
+            super(continuationExecutor);
             this.command = command;
+            this.priority = priority;
         }
 
         @Override
-        public boolean isComplete() {
-            return complete;
+        public boolean tryCancel() {
+            if (!super.tryCancel())
+                return false;
+
+            //If it is queued, remove it. If it is running, interrupt the thread running it.
+            removeFromQueues(this);
+            Thread thread = runner.getAndSet(null);
+            if (thread != null) {
+                thread.interrupt();
+                interruptDone = true;
+            }
+            return true;
+        }
+
+        //Runs the command on the calling working thread, unless it was already cancelled
+        public void run() {
+            runner.set(Thread.currentThread());
+            if (!isComplete()) {
+                long start = System.nanoTime();
+                recordWait(priority, start - submitTime);
+                boolean success = runCommand();
+                metrics.finished(System.nanoTime() - start, success);
+            }
+
+            //If tryCancel took the runner, its interrupt is for this work. Wait for it and clear it,
+            //so it doesn't leak into the next work this thread runs.
+            if (runner.getAndSet(null) == null) {
+                while (!interruptDone)
+                    Thread.onSpinWait();
+                Thread.interrupted();
+            }
+        }
+
+        //Returns false if the command failed. Its exception goes to the result, and is counted in the metrics.
+        protected boolean runCommand() {
+            try {
+                complete(command.call());
+                return true;
+            } catch (Exception e) {
+                fail(e);
+                return false;
+            }
+        }
+    }
+
+    //Work that waits in the timer until its deadline, then is queued as any other work.
+    //Periodic work is queued again a period after each deadline, and only completes when cancelled or when a run fails.
+    private class ScheduledWork<V> extends Work<V> {
+
+        private final long period;
+        private long deadline;
+        private volatile TimingWheel.Timeout timeout;
+
+        public ScheduledWork(Callable<V> command, long deadline, long period) {
+            super(command, NORMAL_PRIORITY);
+            this.deadline = deadline;
+            this.period = period;
         }
 
         @Override
         public boolean tryCancel() {
-            return false;
+            if (!super.tryCancel())
+                return false;
+
+            //Free its place in the timer, if it is waiting there
+            TimingWheel.Timeout current = timeout;
+            if (current != null)
+                current.cancel();
+            return true;
         }
 
         @Override
-        public Optional get(int timeout) throws Exception {
-            return Optional.of(result);
+        public void run() {
+            super.run();
+
+            //Fixed rate: the next deadline is a period after the last one, not after this run ended.
+            //It is only put in the timer once this run is over, so a run that took longer than the period
+            //makes the next one start late, never overlapping.
+            if (period > 0 && !isComplete()) {
+                deadline += period;
+                schedule(this);
+            }
+        }
+
+        @Override
+        protected boolean runCommand() {
+            if (period == 0)
+                return super.runCommand();
+            try {
+                command.call();
+                return true;
+            } catch (Exception e) {
+                fail(e);
+                return false;
+            }
+        }
+    }
+
+    //Work queue with a FIFO lane per priority. The work taken is the head of the most urgent lane,
+    //after aging: each lane head is taken as one lane more urgent for every AGING_TIME it has waited.
+    //Guarded by queueLock.
+    private class PriorityWorkQueue {
+        private final ArrayDeque<Work<?>>[] lanes;
+        //Volatile so the queue depth gauge reads it without taking the lock
+        private volatile int size = 0;
+
+        @SuppressWarnings("unchecked")
+        PriorityWorkQueue() {
+            lanes = (ArrayDeque<Work<?>>[]) new ArrayDeque<?>[PRIORITY_LANES];
+            for (int i = 0; i < PRIORITY_LANES; i++)
+                lanes[i] = new ArrayDeque<>();
         }
 
-        public void complete(T res) {
-            complete = true;
-            result = res;
+        int size() {
+            return size;
         }
 
-        public void exception(Exception e) {
-            complete = true;
-            this.exception = e;
+        int size(int priority) {
+            return lanes[priority].size();
+        }
+
+        void addLast(Work<?> work) {
+            lanes[work.priority].addLast(work);
+            size++;
+        }
+
+        Work<?> removeFirst() {
+            long now = System.nanoTime();
+            long agingTime = TimeUnit.MILLISECONDS.toNanos(AGING_TIME);
+            int chosen = -1;
+            long chosenPriority = Long.MAX_VALUE;
+            for (int i = 0; i < lanes.length; i++) {
+                Work<?> head = lanes[i].peekFirst();
+                if (head == null)
+                    continue;
+                long agedPriority = i - (now - head.submitTime) / agingTime;
+                if (agedPriority < chosenPriority) {
+                    chosen = i;
+                    chosenPriority = agedPriority;
+                }
+            }
+            size--;
+            return lanes[chosen].removeFirst();
+        }
+
+        //The oldest work of the least urgent lane, the one to drop when the queue is full
+        Work<?> removeOldest() {
+            for (int i = lanes.length - 1; i >= 0; i--) {
+                if (!lanes[i].isEmpty()) {
+                    size--;
+                    return lanes[i].removeFirst();
+                }
+            }
+            return null;
+        }
+
+        boolean remove(Work<?> work) {
+            if (!lanes[work.priority].remove(work))
+                return false;
+            size--;
+            return true;
         }
     }
 
@@ -64,204 +259,543 @@ public class ThreadPoolExecutor<T> {
     //if there's not work it awaits, if it finishes await and there's still no work it terminates.
     private class WorkingThread {
 
-        private Work work;
-        private Condition threadCond;
+        private Work<?> work;
+        private final Condition threadCond = queueLock.newCondition();
+        private final ConcurrentLinkedDeque<Work<?>> localQueue = new ConcurrentLinkedDeque<>();
 
-        public WorkingThread(Work _work) {
+        public WorkingThread(Work<?> _work) {
             this.work = _work;
-            this.threadCond = threadLock.newCondition();
+            if (workStealing)
+                stealableThreads.add(this);
             Thread thread = new Thread(() -> {
-                boolean cont = true;
-                while (cont) {
+                currentThread.set(this);
+                do {
+                    //Do work, if it wasn't cancelled meanwhile
+                    if (work != null)
+                        work.run();
+                    work = null;
+
+                    //If it is, try to get new work. Own deque first (newest work, LIFO), then steal.
+                    if (workStealing) {
+                        work = localQueue.pollFirst();
+                        if (work == null)
+                            work = stealWork();
+                    }
+                } while (work != null || awaitWork());
 
-                    //Reset timeout
-                    long limit = Timeouts.start(keepAliveTime);
+                //Terminated, so it can no longer be stolen from
+                stealableThreads.remove(this);
+            });
 
-                    //See if current work is not complete
-                    if (!work.isComplete()) {
+            thread.start();
+        }
 
-                        //Do work
-                        try {
-                            T res = work.command.call();
-                            work.complete(res);
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                            work.exception(e);
-                        }
+        public void assignWork(Work<?> work) {
+            this.work = work;
+        }
 
+        //Take work from the queue, or await until it is handed some. Returns false if the thread should terminate.
+        private boolean awaitWork() {
+            try {
+                queueLock.lock();
+                long limit = Timeouts.start(keepAliveTime);
+                while (true) {
+                    if (workQueue.size() > 0) {
+                        work = workQueue.removeFirst();
+                        signalNotFull();
+                        return true;
                     }
-                    else {
-                        //If it is, try to get new work
-                        try {
-                            queueLock.lock();
-                            if (workQueue.size() > 0) {
-                                this.work = workQueue.removeFirst();
-                                continue;
-                            }
-                        } finally {
-                            queueLock.unlock();
-                        }
-                        //If it can't get new work, proceed to await process
-
-                        //Terminate if timeout or Thread Pool is shutting down
-                        long remaining = Timeouts.remaining(limit);
-                        if (Timeouts.isTimeout(remaining) || isShutdown) {
-                            cont = false;
-                            continue;
-                        }
-
-                        //Start await
-                        try {
-
-                            //Add Thread to awaiting thread list
-                            try {
-                                threadLock.lock();
-                                waitingThreadQueue.addLast(this);
-                                threadCond.await(remaining, TimeUnit.MILLISECONDS);
-                                waitingThreadQueue.remove(this);
-                            } finally {
-                                threadLock.unlock();
-                            }
-                        } catch (InterruptedException e) {
-                            e.printStackTrace();
-                            cont = false;
-
-                            //Remove itself from awaiting thread list
-                            try {
-                                threadLock.lock();
-                                waitingThreadQueue.remove(this);
-                            } finally {
-                                threadLock.unlock();
-                            }
-                        }
-
-                        //See if new work was put in, if not then terminate
-                        if (work.isComplete())
-                            cont = false;
+
+                    //Terminate if timeout or Thread Pool is shutting down
+                    //Signal aliveThreadCond in case there's a thread waiting shutdown
+                    long remaining = Timeouts.remaining(limit);
+                    if (Timeouts.isTimeout(remaining) || isShutdown) {
+                        poolSize--;
+                        if (poolSize == 0)
+                            aliveThreadCond.signalAll();
+                        return false;
                     }
-                }
 
-                //Remove itself from alive thread list
-                //Signal aliveThreadCond in case there's a thread waiting shutdown
-                try {
-                    aliveLock.lock();
-                    aliveThreadQueue.remove(this);
-                    if (aliveThreadQueue.size() == 0)
-                        aliveThreadCond.signal();
-                } finally {
-                    aliveLock.unlock();
-                }
-            });
+                    //Add Thread to awaiting thread list
+                    waitingThreadQueue.addLast(this);
+                    waitingThreads++;
+                    try {
+                        //Look at the other deques again while registered, so work pushed in the meantime isn't missed
+                        work = stealWork();
+                        if (work == null)
+                            threadCond.await(remaining, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        //Terminate on the next iteration, unless work was handed to it meanwhile
+                        e.printStackTrace();
+                        limit = 0;
+                    } finally {
+                        //Remove itself from awaiting thread list, if whoever woke it up didn't already
+                        if (waitingThreadQueue.remove(this))
+                            waitingThreads--;
+                    }
 
-            thread.start();
+                    //When woken up with work assigned, go do it
+                    if (work != null)
+                        return true;
+                }
+            } finally {
+                queueLock.unlock();
+            }
         }
 
-        public void assignWork(Work work) {
-            this.work = work;
+        //Steal the oldest work (FIFO) of another thread, starting at a random one to spread the thieves
+        private Work<?> stealWork() {
+            if (!workStealing)
+                return null;
+            Object[] threads = stealableThreads.toArray();
+            int start = threads.length == 0 ? 0 : ThreadLocalRandom.current().nextInt(threads.length);
+            for (int i = 0; i < threads.length; i++) {
+                @SuppressWarnings("unchecked")
+                WorkingThread victim = (WorkingThread) threads[(start + i) % threads.length];
+                Work<?> stolen = victim.localQueue.pollLast();
+                if (stolen != null)
+                    return stolen;
+            }
+            return null;
         }
     }
 
     //ThreadPool Builder
     public ThreadPoolExecutor(int _maxPoolSize, int keepAliveTime) {
+        this(_maxPoolSize, keepAliveTime, false);
+    }
+
+    //ThreadPool Builder, with work stealing between working threads if workStealing is true
+    public ThreadPoolExecutor(int _maxPoolSize, int keepAliveTime, boolean workStealing) {
+        this(_maxPoolSize, keepAliveTime, workStealing, Integer.MAX_VALUE, RejectionPolicy.REJECT, 0);
+    }
+
+    //ThreadPool Builder, with a work queue of at most queueCapacity works, handled by rejectionPolicy when full.
+    //blockTimeout is how long execute blocks under the BLOCK policy.
+    public ThreadPoolExecutor(int _maxPoolSize, int keepAliveTime, boolean workStealing,
+                              int queueCapacity, RejectionPolicy rejectionPolicy, int blockTimeout) {
+        if (queueCapacity < 0)
+            throw new IllegalArgumentException();
         this.maxPoolSize = _maxPoolSize;
         this.keepAliveTime = keepAliveTime;
-        this.checkWorkThreadCond = queueLock.newCondition();
-        this.aliveThreadCond = aliveLock.newCondition();
-        Thread checkWorkThread = new Thread(this::checkWorkThreadFunction);
-        checkWorkThread.start();
+        this.workStealing = workStealing;
+        this.queueCapacity = queueCapacity;
+        this.rejectionPolicy = rejectionPolicy;
+        this.blockTimeout = blockTimeout;
     }
 
-    //Give new work to be executed
+    //Give new work to be executed, with normal priority
+    @Override
     public Result<T> execute(Callable<T> command) {
+        return execute(command, NORMAL_PRIORITY);
+    }
+
+    //Give new work to be executed, with the given priority, between HIGH_PRIORITY and LOW_PRIORITY
+    public Result<T> execute(Callable<T> command, int priority) {
+        checkPriority(priority);
+        if (isShutdown)
+            throw new RejectedExecutionException();
+
+        Work<T> work = new Work<>(command, priority);
+        submit(work, true);
+        return work;
+    }
+
+    //Give a batch of work to be executed. The whole batch is enqueued under a single lock acquisition,
+    //waking up or creating only as many working threads as there is work for.
+    //Work the rejection policy rejects fails with RejectedExecutionException, instead of the whole call throwing.
+    public Batch<T> executeAll(Collection<? extends Callable<T>> commands) {
+        return executeAll(commands, NORMAL_PRIORITY);
+    }
+
+    //Give a batch of work to be executed, all with the given priority
+    public Batch<T> executeAll(Collection<? extends Callable<T>> commands, int priority) {
+        checkPriority(priority);
+        if (isShutdown)
+            throw new RejectedExecutionException();
+
+        List<Work<T>> works = new ArrayList<>(commands.size());
+        for (Callable<T> command : commands)
+            works.add(new Work<>(command, priority));
+        submitAll(works);
+        return new Batch<>(works);
+    }
+
+    //Give new work to be executed once delay milliseconds have passed.
+    //Cancelling the result before that removes it from the timer.
+    public Result<T> schedule(Callable<T> command, int delay) {
+        if (delay < 0)
+            throw new IllegalArgumentException();
         if (isShutdown)
             throw new RejectedExecutionException();
 
+        ScheduledWork<T> work = new ScheduledWork<>(command, deadlineAfter(delay), 0);
+        schedule(work);
+        return work;
+    }
+
+    //Give new work to be executed once initialDelay milliseconds have passed, and then every period milliseconds.
+    //The result only completes when cancelled, or with the exception of the first run that fails.
+    public Result<T> scheduleAtFixedRate(Callable<T> command, int initialDelay, int period) {
+        if (initialDelay < 0 || period <= 0)
+            throw new IllegalArgumentException();
+        if (isShutdown)
+            throw new RejectedExecutionException();
+
+        ScheduledWork<T> work = new ScheduledWork<>(command, deadlineAfter(initialDelay),
+                TimeUnit.MILLISECONDS.toNanos(period));
+        schedule(work);
+        return work;
+    }
+
+    private static long deadlineAfter(int delay) {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+    }
+
+    //Put the work in the timer until its deadline. If it was cancelled meanwhile, take it out again.
+    private void schedule(ScheduledWork<?> work) {
+        work.timeout = timer.schedule(() -> queueScheduled(work), work.deadline);
+        if (work.isComplete())
+            work.timeout.cancel();
+    }
+
+    //Called by the timer thread at the deadline of the work. It is queued without bound, as blocking or running
+    //it here would hold back every other timeout. If the pool is shutting down, the work fails.
+    private void queueScheduled(ScheduledWork<?> work) {
+        if (work.isComplete())
+            return;
+        work.submitTime = System.nanoTime();
+        try {
+            submit(work, false);
+        } catch (RejectedExecutionException e) {
+            work.fail(e);
+        }
+    }
+
+    //Run a continuation as work on the pool, or on the completing thread if the pool is shutting down.
+    //It runs either way, so it's counted as submitted, but never as rejected.
+    private void executeContinuation(Runnable continuation) {
+        Work<Void> work = new Work<>(() -> {
+            continuation.run();
+            return null;
+        }, NORMAL_PRIORITY);
+        metrics.submitted();
+        try {
+            offer(work, false);
+        } catch (RejectedExecutionException e) {
+            work.run();
+        }
+    }
+
+    //Throws RejectedExecutionException if the pool is shutting down, or if the work is rejected by the policy.
+    //Unbounded work skips the queue capacity.
+    private void submit(Work<?> work, boolean bounded) {
+        metrics.submitted();
+        try {
+            offer(work, bounded);
+        } catch (RejectedExecutionException e) {
+            metrics.rejected();
+            throw e;
+        }
+    }
+
+    private void offer(Work<?> work, boolean bounded) {
+        //In work stealing mode, work given from inside a working thread stays in that thread's deque
+        WorkingThread workingThread = workStealing ? currentThread.get() : null;
+        if (workingThread != null) {
+            workingThread.localQueue.addFirst(work);
+            signalWaitingThreads(1);
+            return;
+        }
+
+        Work<?> overflow;
         try {
             queueLock.lock();
-            Work work = new Work(command);
-            workQueue.addLast(work);
-            checkWorkThreadCond.signal();
-            return work;
+            if (isShutdown)
+                throw new RejectedExecutionException();
+
+            //If it can not hand it to a thread, queue it for the next thread that finishes its work
+            if (handOff(work))
+                return;
+            if (!bounded) {
+                workQueue.addLast(work);
+                return;
+            }
+            overflow = enqueue(work);
         } finally {
             queueLock.unlock();
         }
+        if (overflow != null)
+            handleOverflow(overflow);
     }
 
-    //Set to shutdown mode
-    public void shutdown() {
-        isShutdown = true;
+    //Submits every work, failing the ones that are rejected
+    private void submitAll(List<? extends Work<?>> works) {
+        for (int i = 0; i < works.size(); i++)
+            metrics.submitted();
+        WorkingThread workingThread = workStealing ? currentThread.get() : null;
+        if (workingThread != null) {
+            for (Work<?> work : works)
+                workingThread.localQueue.addFirst(work);
+            signalWaitingThreads(works.size());
+            return;
+        }
+
+        List<Work<?>> overflows = new ArrayList<>();
+        int rejectedFrom = works.size();
+        try {
+            queueLock.lock();
+            if (isShutdown) {
+                for (int i = 0; i < works.size(); i++)
+                    metrics.rejected();
+                throw new RejectedExecutionException();
+            }
+
+            //Hand work to threads while there are threads for it, then queue the rest
+            for (int i = 0; i < works.size(); i++) {
+                Work<?> work = works.get(i);
+                if (handOff(work))
+                    continue;
+                try {
+                    Work<?> overflow = enqueue(work);
+                    if (overflow != null)
+                        overflows.add(overflow);
+                } catch (RejectedExecutionException e) {
+                    //enqueue counted this work, the rest of the batch is rejected with it
+                    rejectionCounts.addAndGet(RejectionPolicy.REJECT.ordinal(), works.size() - i - 1);
+                    rejectedFrom = i;
+                    break;
+                }
+            }
+        } finally {
+            queueLock.unlock();
+        }
+
+        for (Work<?> overflow : overflows)
+            handleOverflow(overflow);
+        for (int i = rejectedFrom; i < works.size(); i++) {
+            metrics.rejected();
+            works.get(i).fail(new RejectedExecutionException());
+        }
     }
 
-    //Await termination of every alive thread
-    public boolean awaitTermination(int timeout) throws InterruptedException {
+    //Queue work, applying the rejection policy if the queue is full. Called with queueLock held.
+    //Returns the work the caller has to handle after unlocking, if any: the work itself for CALLER_RUNS,
+    //or the discarded one for DROP_OLDEST, which is the work itself when the queue has no room at all.
+    private Work<?> enqueue(Work<?> work) {
+        if (workQueue.size() < queueCapacity) {
+            workQueue.addLast(work);
+            return null;
+        }
+
+        rejectionCounts.incrementAndGet(rejectionPolicy.ordinal());
+        switch (rejectionPolicy) {
+            case BLOCK:
+                //A thread may have gone to await while this one was blocked
+                awaitNotFull();
+                if (!handOff(work))
+                    workQueue.addLast(work);
+                return null;
+            case CALLER_RUNS:
+                return work;
+            case DROP_OLDEST:
+                Work<?> oldest = workQueue.removeOldest();
+                //With no room at all there's nothing to drop, so the new work is the one discarded
+                if (oldest == null)
+                    return work;
+                workQueue.addLast(work);
+                return oldest;
+            default:
+                throw new RejectedExecutionException();
+        }
+    }
+
+    //Await room in the queue, for at most blockTimeout. Called with queueLock held.
+    //If the timeout is reached or the pool shuts down meanwhile, the work is rejected and counted as so.
+    private void awaitNotFull() {
+        long limit = Timeouts.start(blockTimeout);
+        blockedSubmitters++;
         try {
-            aliveLock.lock();
-            long limit = Timeouts.start(timeout);
-            while (true) {
-                if (aliveThreadQueue.size() == 0)
-                    return true;
-                else {
-                    long remaining = Timeouts.remaining(limit);
-                    if (Timeouts.isTimeout(remaining)) {
-                        if (aliveThreadQueue.size() == 0)
-                            return true;
-                        else
-                            return false;
-                    }
-                    aliveThreadCond.await(remaining, TimeUnit.MILLISECONDS);
+            while (workQueue.size() >= queueCapacity) {
+                long remaining = Timeouts.remaining(limit);
+                if (Timeouts.isTimeout(remaining) || isShutdown) {
+                    rejectionCounts.incrementAndGet(RejectionPolicy.REJECT.ordinal());
+                    throw new RejectedExecutionException();
                 }
+                notFullCond.await(remaining, TimeUnit.MILLISECONDS);
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException(e);
         } finally {
-            aliveLock.unlock();
+            blockedSubmitters--;
         }
     }
 
-    //Check Thread's implementation. This thread manages the working threads, waking them up if new work shows up,
-    //and creates new working threads if possible.
-    private void checkWorkThreadFunction() {
+    //Signal a submitter blocked on a full queue that there's room. Called with queueLock held.
+    private void signalNotFull() {
+        if (blockedSubmitters > 0)
+            notFullCond.signal();
+    }
+
+    //Run the work on the caller thread for CALLER_RUNS, or fail the discarded work for DROP_OLDEST
+    private void handleOverflow(Work<?> overflow) {
+        if (rejectionPolicy == RejectionPolicy.CALLER_RUNS) {
+            overflow.run();
+        } else {
+            metrics.rejected();
+            overflow.fail(new RejectedExecutionException());
+        }
+    }
+
+    private static void checkPriority(int priority) {
+        if (priority < HIGH_PRIORITY || priority >= PRIORITY_LANES)
+            throw new IllegalArgumentException();
+    }
+
+    private void recordWait(int priority, long waitNanos) {
+        metrics.started(waitNanos);
+        laneWaitTime[priority].add(waitNanos);
+        laneWaitCount[priority].increment();
+        //Only write the max when it goes up
+        if (waitNanos > laneMaxWaitTime.get(priority))
+            laneMaxWaitTime.accumulateAndGet(priority, waitNanos, Math::max);
+    }
+
+    private static LongAdder[] newAdders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++)
+            adders[i] = new LongAdder();
+        return adders;
+    }
+
+    //Counters, queue depth, and histograms of queue wait and run time, read without stopping the working threads
+    public ExecutorMetrics.Snapshot getMetrics() {
+        return metrics.snapshot();
+    }
+
+    //How many works of the given priority are queued
+    public int getQueueDepth(int priority) {
+        checkPriority(priority);
         try {
             queueLock.lock();
-            while (true) {
+            return workQueue.size(priority);
+        } finally {
+            queueLock.unlock();
+        }
+    }
 
-                //See if there is work queued
-                if (workQueue.size() > 0) {
+    //Average time, in milliseconds, works of the given priority waited from execute until they started running
+    public double getAverageWaitTime(int priority) {
+        checkPriority(priority);
+        long count = laneWaitCount[priority].sum();
+        return count == 0 ? 0 : (double) laneWaitTime[priority].sum() / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
 
-                    //See if there's any thread awaiting
-                    if (waitingThreadQueue.size() > 0) {
-                        WorkingThread workingThread = waitingThreadQueue.removeFirst();
-                        Work work = workQueue.removeFirst();
+    //Longest time, in milliseconds, a work of the given priority waited from execute until it started running
+    public long getMaxWaitTime(int priority) {
+        checkPriority(priority);
+        return TimeUnit.NANOSECONDS.toMillis(laneMaxWaitTime.get(priority));
+    }
 
-                        //When waking up a thread, assign it work beforehand, so it doesn't try to find work by itself
-                        workingThread.assignWork(work);
-                        workingThread.threadCond.signal();
-                    }
+    //How many times the queue was full and the given policy was applied.
+    //Under BLOCK, submitters that timed out count as REJECT too.
+    public long getRejectionCount(RejectionPolicy policy) {
+        return rejectionCounts.get(policy.ordinal());
+    }
 
-                    //If there is no thread awaiting, see if it can create a new Working Thread
-                    else if (aliveThreadQueue.size() < maxPoolSize) {
-                        try {
-                            aliveLock.lock();
-                            Work work = workQueue.removeFirst();
-                            WorkingThread workingThread = new WorkingThread(work);
-                            aliveThreadQueue.addLast(workingThread);
-                        } finally {
-                            aliveLock.unlock();
-                        }
-                    }
-                    //If it can not create a new Working Thread, go await
-                    else {
-                        try {
-                            checkWorkThreadCond.await();
-                        } catch (InterruptedException e) {
-                            e.printStackTrace();
-                        }
-                    }
-                //If no work is queued, go await
+    //Hand work directly to an awaiting thread, or to a new one. Returns false if neither is possible.
+    //Called with queueLock held.
+    private boolean handOff(Work<?> work) {
+        //See if there's any thread awaiting, and hand it the work directly
+        if (waitingThreadQueue.size() > 0) {
+            WorkingThread workingThread = waitingThreadQueue.removeFirst();
+            waitingThreads--;
+
+            //When waking up a thread, assign it work beforehand, so it doesn't try to find work by itself
+            workingThread.assignWork(work);
+            workingThread.threadCond.signal();
+            return true;
+        }
+        //If there is no thread awaiting, see if it can create a new Working Thread
+        if (poolSize < maxPoolSize) {
+            poolSize++;
+            new WorkingThread(work);
+            return true;
+        }
+        return false;
+    }
+
+    //Remove cancelled work from the queue and from the deques it may be in
+    private void removeFromQueues(Work<?> work) {
+        try {
+            queueLock.lock();
+            if (workQueue.remove(work)) {
+                signalNotFull();
+                return;
+            }
+        } finally {
+            queueLock.unlock();
+        }
+        for (WorkingThread workingThread : stealableThreads) {
+            if (workingThread.localQueue.remove(work))
+                return;
+        }
+    }
+
+    //Wake up awaiting threads, without work assigned, so they go and steal the newly pushed work.
+    //If there are not enough threads awaiting, see if it can create new Working Threads to steal it.
+    private void signalWaitingThreads(int count) {
+        if (waitingThreads == 0 && poolSize >= maxPoolSize)
+            return;
+        try {
+            queueLock.lock();
+            for (int i = 0; i < count; i++) {
+                if (waitingThreadQueue.size() > 0) {
+                    waitingThreadQueue.removeFirst().threadCond.signal();
+                    waitingThreads--;
+                } else if (poolSize < maxPoolSize) {
+                    poolSize++;
+                    new WorkingThread(null);
                 } else {
-                    try {
-                        checkWorkThreadCond.await();
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
+                    break;
+                }
+            }
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
+    //Set to shutdown mode, waking up the awaiting threads so they terminate.
+    //Scheduled work still in the timer fails with RejectedExecutionException.
+    @Override
+    public void shutdown() {
+        try {
+            queueLock.lock();
+            isShutdown = true;
+            for (WorkingThread workingThread : waitingThreadQueue)
+                workingThread.threadCond.signal();
+            notFullCond.signalAll();
+        } finally {
+            queueLock.unlock();
+        }
+        timer.stop();
+    }
+
+    //Await termination of every alive thread
+    @Override
+    public boolean awaitTermination(int timeout) throws InterruptedException {
+        try {
+            queueLock.lock();
+            long limit = Timeouts.start(timeout);
+            while (true) {
+                if (poolSize == 0)
+                    return true;
+                else {
+                    long remaining = Timeouts.remaining(limit);
+                    if (Timeouts.isTimeout(remaining))
+                        return false;
+                    aliveThreadCond.await(remaining, TimeUnit.MILLISECONDS);
                 }
             }
         } finally {
@@ -0,0 +1,176 @@
+package pc;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+//Hashed timing wheel, driven by a single timer thread, for tasks that run once their deadline is reached.
+//The wheel is an array of buckets, one per tick, and a timeout further than a full turn away waits in its bucket
+//for as many turns as it needs. Scheduling and cancelling are O(1): new timeouts go to a lock-free queue the timer
+//thread moves to their buckets on each tick, and cancelled ones are only marked, and dropped when their bucket is
+//swept. Tasks run on the timer thread, so they must be short, like handing work to an executor.
+class TimingWheel {
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private final long tickNanos;
+    private final ArrayDeque<Timeout>[] buckets;
+    private final int mask;
+    private final long startTime = System.nanoTime();
+    private final ConcurrentLinkedQueue<Timeout> added = new ConcurrentLinkedQueue<>();
+
+    //Timeouts neither expired nor cancelled. The timer thread parks without ticking while there are none.
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Thread timerThread;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile boolean stopped = false;
+
+    //Only touched by the timer thread
+    private long tick = 0;
+
+    //A task to run at a deadline, that may be cancelled before
+    class Timeout {
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        private long remainingTurns;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        //Returns false if it already expired or was cancelled
+        public boolean cancel() {
+            if (!state.compareAndSet(PENDING, CANCELLED))
+                return false;
+            pending.decrementAndGet();
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(PENDING, EXPIRED))
+                return;
+            pending.decrementAndGet();
+            //Don't let a failing task stop the timer
+            try {
+                task.run();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    //Timing wheel of wheelSize buckets, a power of two, each covering tickMillis
+    @SuppressWarnings("unchecked")
+    TimingWheel(int tickMillis, int wheelSize) {
+        if (tickMillis <= 0 || wheelSize <= 0 || Integer.bitCount(wheelSize) != 1)
+            throw new IllegalArgumentException();
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.buckets = (ArrayDeque<Timeout>[]) new ArrayDeque<?>[wheelSize];
+        for (int i = 0; i < wheelSize; i++)
+            buckets[i] = new ArrayDeque<>();
+        this.mask = wheelSize - 1;
+        this.timerThread = new Thread(this::runTimer, "TimingWheel");
+        this.timerThread.setDaemon(true);
+    }
+
+    //Run task once System.nanoTime() reaches deadline, at most a tick late.
+    //If the wheel is stopped, the task runs right away on the calling thread.
+    public Timeout schedule(Runnable task, long deadline) {
+        Timeout timeout = new Timeout(task, deadline);
+        if (stopped) {
+            timeout.expire();
+            return timeout;
+        }
+
+        //The timer thread is only started by the first timeout
+        if (!started.get() && started.compareAndSet(false, true))
+            timerThread.start();
+
+        pending.incrementAndGet();
+        added.offer(timeout);
+        LockSupport.unpark(timerThread);
+
+        //Stopped meanwhile, the timer thread may have already left without seeing it
+        if (stopped)
+            timeout.expire();
+        return timeout;
+    }
+
+    //Stop the timer thread. Every timeout still pending expires right away, so its task can see it was stopped.
+    public void stop() {
+        stopped = true;
+        LockSupport.unpark(timerThread);
+    }
+
+    private void runTimer() {
+        while (!stopped) {
+            moveAdded();
+            expireBucket();
+            tick++;
+
+            //With nothing pending, park until a timeout is added, then catch up with the ticks slept through.
+            //No bucket holds a pending timeout, so skipping them loses nothing.
+            if (pending.get() == 0) {
+                while (pending.get() == 0 && !stopped)
+                    LockSupport.park(this);
+                tick = Math.max(tick, (System.nanoTime() - startTime) / tickNanos);
+                continue;
+            }
+
+            //Sleep until the next tick is due
+            long delay;
+            while ((delay = startTime + tick * tickNanos - System.nanoTime()) > 0 && !stopped)
+                LockSupport.parkNanos(this, delay);
+        }
+
+        moveAdded();
+        for (ArrayDeque<Timeout> bucket : buckets) {
+            for (Timeout timeout : bucket)
+                timeout.expire();
+            bucket.clear();
+        }
+    }
+
+    //Place the newly added timeouts in the bucket of the tick they are due, or the current one if already due
+    private void moveAdded() {
+        Timeout timeout;
+        while ((timeout = added.poll()) != null) {
+            if (timeout.isCancelled())
+                continue;
+            long dueTick = Math.max(tick, ceilDiv(timeout.deadline - startTime, tickNanos));
+            timeout.remainingTurns = (dueTick - tick) / buckets.length;
+            buckets[(int) (dueTick & mask)].addLast(timeout);
+        }
+    }
+
+    //Expire the timeouts of the current bucket that are due in this turn, and drop the cancelled ones
+    private void expireBucket() {
+        Iterator<Timeout> it = buckets[(int) (tick & mask)].iterator();
+        while (it.hasNext()) {
+            Timeout timeout = it.next();
+            if (timeout.isCancelled()) {
+                it.remove();
+            } else if (timeout.remainingTurns == 0) {
+                it.remove();
+                timeout.expire();
+            } else {
+                timeout.remainingTurns--;
+            }
+        }
+    }
+
+    private static long ceilDiv(long x, long y) {
+        return x <= 0 ? 0 : (x + y - 1) / y;
+    }
+}
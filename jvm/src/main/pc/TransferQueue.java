@@ -1,5 +1,6 @@
 package pc;
 
+import java.util.Collection;
 import java.util.LinkedList;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
@@ -11,19 +12,32 @@ public class TransferQueue<E> {
     private final Condition cond = mon.newCondition();
     private final LinkedList<Message> list = new LinkedList<>();
 
+    //Never waits for a taker, so the message needs no condition of its own
     public void put(E message){
-        new Thread(() -> {
-            try {
-                mon.lock();
+        try {
+            mon.lock();
+
+            //Add message to list, and wake a single taker for it
+            Message msg = new Message(message, null);
+            list.add(msg);
+            cond.signal();
+        } finally {
+            mon.unlock();
+        }
+    }
 
-                //Add message to list
-                Message msg = new Message(message, mon.newCondition());
-                list.add(msg);
+    //Puts every message with a single lock acquisition, waking at most one taker for each
+    public void putAll(Collection<? extends E> messages){
+        try {
+            mon.lock();
+
+            for (E message : messages) {
+                list.add(new Message(message, null));
                 cond.signal();
-            } finally {
-                mon.unlock();
             }
-        }).start();
+        } finally {
+            mon.unlock();
+        }
     }
 
     public boolean transfer(E message, long timeout) throws InterruptedException{
@@ -64,10 +78,7 @@ public class TransferQueue<E> {
 
             //Happy path
             if(!list.isEmpty()){
-                Message msg = list.removeFirst();
-                msg.taken = true;
-                msg.cond.signal();
-                return msg.message;
+                return takeFirst();
             }
 
             long limit = Timeouts.start(timeout);
@@ -78,10 +89,7 @@ public class TransferQueue<E> {
 
                 //See if there's anything in the list
                 if(!list.isEmpty()){
-                    Message msg = list.removeFirst();
-                    msg.taken = true;
-                    msg.cond.signal();
-                    return msg.message;
+                    return takeFirst();
                 }
 
                 //Leave wait loop if timeout reached
@@ -95,6 +103,66 @@ public class TransferQueue<E> {
         }
     }
 
+    //Moves up to max messages to target, without waiting, and returns how many were moved
+    public int drainTo(Collection<? super E> target, int max){
+        try {
+            mon.lock();
+            return drain(target, max);
+        } finally {
+            mon.unlock();
+        }
+    }
+
+    //Waits up to timeout milliseconds for a message, then moves every message there is, up to max.
+    //Returns how many were moved, 0 if the timeout was reached.
+    public int drainTo(Collection<? super E> target, int max, long timeout) throws InterruptedException{
+        try {
+            mon.lock();
+
+            //Happy path
+            if(!list.isEmpty() || max <= 0){
+                return drain(target, max);
+            }
+
+            long limit = Timeouts.start(timeout);
+            long remaining = Timeouts.remaining(limit);
+            while (true) {
+                //Start wait
+                cond.await(remaining, TimeUnit.MILLISECONDS);
+
+                //See if there's anything in the list
+                if(!list.isEmpty()){
+                    return drain(target, max);
+                }
+
+                //Leave wait loop if timeout reached
+                remaining = Timeouts.remaining(limit);
+                if (Timeouts.isTimeout(remaining)) {
+                    return 0;
+                }
+            }
+        } finally {
+            mon.unlock();
+        }
+    }
+
+    private int drain(Collection<? super E> target, int max){
+        int count = 0;
+        while (count < max && !list.isEmpty()) {
+            target.add(takeFirst());
+            count++;
+        }
+        return count;
+    }
+
+    private E takeFirst(){
+        Message msg = list.removeFirst();
+        msg.taken = true;
+        if(msg.cond != null)
+            msg.cond.signal();
+        return msg.message;
+    }
+
     private class Message{
         private final E message;
         private final Condition cond;
@@ -0,0 +1,180 @@
+package pc;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+//Runs each work on its own virtual thread, so work blocking on I/O doesn't hold a platform thread.
+//Concurrency is bounded by a permit counter instead of a number of working threads: work given while every
+//permit is taken waits in a FIFO queue, and is started when a running work completes and gives its permit back.
+public class VirtualThreadExecutor<T> implements ResultExecutor<T> {
+    private final AtomicInteger permits;
+    private final ConcurrentLinkedQueue<Work<?>> pendingQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger unfinished = new AtomicInteger(0);
+    private volatile boolean isShutdown = false;
+
+    private final Lock mon = new ReentrantLock();
+    private final Condition terminatedCond = mon.newCondition();
+
+    //Continuations of results run as work on this executor
+    private final Executor continuationExecutor = this::executeContinuation;
+
+    //Represents work to be executed or work already executed
+    private class Work<V> extends Promise<V> {
+        private final Callable<V> command;
+        private volatile Thread thread;
+
+        Work(Callable<V> command) {
+            super(continuationExecutor);
+            this.command = command;
+        }
+
+        @Override
+        public boolean tryCancel() {
+            if (!super.tryCancel())
+                return false;
+
+            //If it is pending, remove it. If it is running, interrupt its thread, which only runs this work.
+            if (pendingQueue.remove(this)) {
+                finished();
+                return true;
+            }
+            Thread thread = this.thread;
+            if (thread != null)
+                thread.interrupt();
+            return true;
+        }
+
+        //Runs the command on its virtual thread, unless it was already cancelled
+        void run() {
+            thread = Thread.currentThread();
+            try {
+                if (!isComplete())
+                    complete(command.call());
+            } catch (Exception e) {
+                fail(e);
+            } finally {
+                thread = null;
+            }
+        }
+    }
+
+    //Executor running at most maxConcurrency works at the same time
+    public VirtualThreadExecutor(int maxConcurrency) {
+        if (maxConcurrency < 1)
+            throw new IllegalArgumentException();
+        this.permits = new AtomicInteger(maxConcurrency);
+    }
+
+    @Override
+    public Result<T> execute(Callable<T> command) {
+        if (isShutdown)
+            throw new RejectedExecutionException();
+
+        Work<T> work = new Work<>(command);
+        submit(work);
+        return work;
+    }
+
+    //Run a continuation as work on this executor, or on the completing thread if it is shutting down
+    private void executeContinuation(Runnable continuation) {
+        Work<Void> work = new Work<>(() -> {
+            continuation.run();
+            return null;
+        });
+        if (isShutdown)
+            work.run();
+        else
+            submit(work);
+    }
+
+    private void submit(Work<?> work) {
+        unfinished.incrementAndGet();
+        pendingQueue.add(work);
+        startPending();
+    }
+
+    //Start pending work while there are permits for it.
+    //Called after adding work and after giving a permit back, so the last of the two always sees the other.
+    private void startPending() {
+        while (!pendingQueue.isEmpty()) {
+            if (!tryAcquirePermit())
+                return;
+            Work<?> work = pendingQueue.poll();
+            if (work == null) {
+                permits.incrementAndGet();
+                continue;
+            }
+            Thread.ofVirtual().start(() -> {
+                try {
+                    work.run();
+                } finally {
+                    permits.incrementAndGet();
+                    finished();
+                    startPending();
+                }
+            });
+        }
+    }
+
+    private boolean tryAcquirePermit() {
+        while (true) {
+            int observed = permits.get();
+            if (observed == 0)
+                return false;
+            if (permits.compareAndSet(observed, observed - 1))
+                return true;
+        }
+    }
+
+    //Signal terminatedCond when the last work finishes after shutdown
+    private void finished() {
+        if (unfinished.decrementAndGet() == 0 && isShutdown)
+            signalTerminated();
+    }
+
+    private void signalTerminated() {
+        try {
+            mon.lock();
+            terminatedCond.signalAll();
+        } finally {
+            mon.unlock();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        isShutdown = true;
+        if (unfinished.get() == 0)
+            signalTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(int timeout) throws InterruptedException {
+        try {
+            mon.lock();
+            long limit = Timeouts.start(timeout);
+            while (true) {
+                if (isShutdown && unfinished.get() == 0)
+                    return true;
+                long remaining = Timeouts.remaining(limit);
+                if (Timeouts.isTimeout(remaining))
+                    return false;
+                terminatedCond.await(remaining, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            mon.unlock();
+        }
+    }
+
+    //How many permits are free, for testing purposes
+    public int getAvailablePermits() {
+        return permits.get();
+    }
+}
@@ -0,0 +1,34 @@
+package pc;
+
+//How a thread waits for something another thread does: spinning, then yielding, then parking until woken.
+//Spinning answers fastest but keeps a core busy, parking frees the core but pays for the unpark and the reschedule.
+public enum WaitStrategy {
+    //Only spins, for latency-critical threads with a core to themselves
+    SPIN(Long.MAX_VALUE, 0),
+    //Spins briefly, then yields, never parking
+    YIELD(64, Long.MAX_VALUE),
+    //Spins briefly, yields a few times, then parks
+    PARK(64, 16);
+
+    private final long spins;
+    private final long yields;
+
+    WaitStrategy(long spins, long yields) {
+        this.spins = spins;
+        this.yields = yields;
+    }
+
+    //Waits a little, the way this strategy does after tries failed tries.
+    //Returns false without waiting once it's time to park, which is up to the caller.
+    public boolean idle(long tries) {
+        if (tries < spins) {
+            Thread.onSpinWait();
+            return true;
+        }
+        if (tries - spins < yields) {
+            Thread.yield();
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,104 @@
+package pc;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class ArenaExchangerTest {
+
+    @Test
+    public void singleExchangeTest() throws InterruptedException {
+        ArenaExchanger<String> exchanger = new ArenaExchanger<>();
+        String[] values = new String[2];
+
+        Thread th1 = new Thread(() -> {
+            try {
+                values[0] = exchanger.exchange("data1", Integer.MAX_VALUE).get();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        Thread th2 = new Thread(() -> {
+            try {
+                values[1] = exchanger.exchange("data2", Integer.MAX_VALUE).get();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        th1.start();
+        th2.start();
+        th1.join();
+        th2.join();
+
+        Assert.assertEquals("data2", values[0]);
+        Assert.assertEquals("data1", values[1]);
+    }
+
+    @Test
+    public void timeoutTest() throws InterruptedException {
+        ArenaExchanger<String> exchanger = new ArenaExchanger<>();
+        Assert.assertFalse(exchanger.exchange("data", 0).isPresent());
+        Assert.assertFalse(exchanger.exchange("data", 100).isPresent());
+    }
+
+    @Test
+    public void interruptTest() throws InterruptedException {
+        ArenaExchanger<String> exchanger = new ArenaExchanger<>();
+        boolean[] interrupted = new boolean[1];
+        Thread th = new Thread(() -> {
+            try {
+                exchanger.exchange("data", Integer.MAX_VALUE);
+            } catch (InterruptedException e) {
+                interrupted[0] = true;
+            }
+        });
+        th.start();
+        Thread.sleep(100);
+        th.interrupt();
+        th.join();
+
+        Assert.assertTrue(interrupted[0]);
+        //The interrupted thread's data was withdrawn
+        Assert.assertFalse(exchanger.exchange("other", 100).isPresent());
+    }
+
+    @Test
+    public void manyThreadsTest() throws InterruptedException {
+        ArenaExchanger<Integer> exchanger = new ArenaExchanger<>();
+        List<Thread> ths = new LinkedList<>();
+        final int nOfThreads = 8;
+        final int nOfExchanges = 10000;
+        //given[i] counts the exchanges where thread i gave its data, got[i] the ones where another thread got it
+        AtomicLongArray given = new AtomicLongArray(nOfThreads);
+        AtomicLongArray got = new AtomicLongArray(nOfThreads);
+
+        for (int i = 0; i < nOfThreads; i++) {
+            int finalI = i;
+            ths.add(new Thread(() -> {
+                try {
+                    for (int j = 0; j < nOfExchanges; j++) {
+                        Optional<Integer> res = exchanger.exchange(finalI, 50);
+                        if (res.isPresent()) {
+                            given.incrementAndGet(finalI);
+                            got.incrementAndGet(res.get());
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }));
+        }
+        for (Thread th : ths)
+            th.start();
+        for (Thread th : ths)
+            th.join();
+
+        //Data only ever reaches a partner when the partner's reaches its owner
+        for (int i = 0; i < nOfThreads; i++)
+            Assert.assertEquals(given.get(i), got.get(i));
+    }
+}
@@ -1,10 +1,13 @@
 package pc;
 
+import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class BroadcastBoxTest {
 
@@ -82,4 +85,39 @@ public class BroadcastBoxTest {
         }
         assert true;
     }
+
+    @Test
+    public void deliveredCountTest() throws InterruptedException {
+        BroadcastBox<Integer> broadcastBox = new BroadcastBox<>();
+        Assert.assertFalse(broadcastBox.receive(0).isPresent());
+        Assert.assertEquals(0, broadcastBox.deliverToAll(0));
+
+        final int nOfDeliveries = 20000;
+        AtomicInteger received = new AtomicInteger();
+        AtomicInteger delivered = new AtomicInteger();
+        AtomicBoolean done = new AtomicBoolean(false);
+        List<Thread> receivers = new LinkedList<>();
+        for (int i = 0; i < 6; i++) {
+            Thread th = new Thread(() -> {
+                try {
+                    while (!done.get()) {
+                        if (broadcastBox.receive((long) (Math.random() * 5)).isPresent())
+                            received.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            });
+            th.start();
+            receivers.add(th);
+        }
+        for (int i = 0; i < nOfDeliveries; i++)
+            delivered.addAndGet(broadcastBox.deliverToAll(i));
+        done.set(true);
+        for (Thread th : receivers)
+            th.join();
+
+        //Every receiver counted by a delivery got its message, and those that timed out weren't counted
+        Assert.assertEquals(delivered.get(), received.get());
+    }
 }
@@ -0,0 +1,67 @@
+package pc;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+public class BufferExchangerTest {
+
+    @Test
+    public void timeoutTest() throws InterruptedException {
+        BufferExchanger<ByteBuffer> exchanger = new BufferExchanger<>(() -> ByteBuffer.allocate(16));
+        Assert.assertNotSame(exchanger.first(), exchanger.second());
+        Assert.assertNull(exchanger.exchange(exchanger.first(), 0));
+        Assert.assertNull(exchanger.exchange(exchanger.second(), 100));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void foreignBufferTest() throws InterruptedException {
+        BufferExchanger<long[]> exchanger = new BufferExchanger<>(new long[1], new long[1]);
+        exchanger.exchange(new long[1], 0);
+    }
+
+    @Test
+    public void doubleBufferTest() throws InterruptedException {
+        for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+            BufferExchanger<long[]> exchanger = new BufferExchanger<>(new long[4], new long[4], waitStrategy);
+            final int nOfExchanges = 1000;
+            int[] errors = new int[1];
+
+            Thread producer = new Thread(() -> {
+                try {
+                    long[] buffer = exchanger.first();
+                    for (int i = 0; i < nOfExchanges; i++) {
+                        for (int j = 0; j < buffer.length; j++)
+                            buffer[j] = i;
+                        buffer = exchanger.exchange(buffer, 5000);
+                        if (buffer == null)
+                            errors[0]++;
+                    }
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            });
+            Thread consumer = new Thread(() -> {
+                try {
+                    long[] buffer = exchanger.second();
+                    for (int i = 0; i < nOfExchanges; i++) {
+                        buffer = exchanger.exchange(buffer, 5000);
+                        //Every buffer comes full, in the order it was filled
+                        for (long value : buffer)
+                            if (value != i)
+                                errors[0]++;
+                    }
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            });
+            producer.start();
+            consumer.start();
+            producer.join();
+            consumer.join();
+
+            Assert.assertEquals(0, errors[0]);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package pc;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class DualTransferQueueTest {
+
+    @Test
+    public void transferTakeTest() throws InterruptedException {
+        DualTransferQueue<String> transferQueue = new DualTransferQueue<>();
+        AtomicBoolean transferred = new AtomicBoolean();
+
+        Thread th = new Thread(() -> {
+            try {
+                transferred.set(transferQueue.transfer("TransferMessage #1", 5 * 1000));
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        th.start();
+        Thread.sleep(500);
+
+        Assert.assertEquals("TransferMessage #1", transferQueue.take(5 * 1000));
+        th.join();
+        Assert.assertTrue(transferred.get());
+    }
+
+    @Test
+    public void putTakeOrderTest() throws InterruptedException {
+        DualTransferQueue<Integer> transferQueue = new DualTransferQueue<>();
+        for (int i = 0; i < 10; i++)
+            transferQueue.put(i);
+
+        for (int i = 0; i < 10; i++)
+            Assert.assertEquals(Integer.valueOf(i), transferQueue.take(0));
+        Assert.assertNull(transferQueue.take(0));
+    }
+
+    @Test
+    public void waitingTakerTest() throws InterruptedException {
+        DualTransferQueue<String> transferQueue = new DualTransferQueue<>();
+        List<String> results = new LinkedList<>();
+
+        Thread th = new Thread(() -> {
+            try {
+                String res = transferQueue.take(5 * 1000);
+                synchronized (results) {
+                    results.add(res);
+                }
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        th.start();
+        Thread.sleep(500);
+
+        //The taker is waiting, so a transfer that doesn't wait still gets through
+        Assert.assertTrue(transferQueue.transfer("TransferMessage #1", 0));
+        th.join();
+        Assert.assertEquals("TransferMessage #1", results.get(0));
+    }
+
+    @Test
+    public void timeoutTest() throws InterruptedException {
+        DualTransferQueue<String> transferQueue = new DualTransferQueue<>();
+
+        long start = System.currentTimeMillis();
+        Assert.assertFalse(transferQueue.transfer("TransferMessage #1", 500));
+        Assert.assertTrue(System.currentTimeMillis() - start >= 500);
+
+        //A transfer that timed out withdraws its message
+        Assert.assertNull(transferQueue.take(0));
+
+        start = System.currentTimeMillis();
+        Assert.assertNull(transferQueue.take(500));
+        Assert.assertTrue(System.currentTimeMillis() - start >= 500);
+
+        //Nor does a take that timed out keep a put message
+        transferQueue.put("PutMessage #2");
+        Assert.assertEquals("PutMessage #2", transferQueue.take(0));
+    }
+
+    @Test
+    public void interruptTest() throws InterruptedException {
+        DualTransferQueue<String> transferQueue = new DualTransferQueue<>();
+        AtomicBoolean interrupted = new AtomicBoolean();
+
+        Thread th = new Thread(() -> {
+            try {
+                transferQueue.take(5 * 1000);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+        });
+        th.start();
+        Thread.sleep(500);
+        th.interrupt();
+        th.join();
+
+        Assert.assertTrue(interrupted.get());
+        transferQueue.put("PutMessage #1");
+        Assert.assertEquals("PutMessage #1", transferQueue.take(0));
+    }
+
+    @Test
+    public void manyThreadsTest() throws InterruptedException {
+        DualTransferQueue<String> transferQueue = new DualTransferQueue<>();
+        Set<String> received = ConcurrentHashMap.newKeySet();
+        List<Thread> ths = new LinkedList<>();
+        final int nOfThreads = 8;
+        final int nOfMessages = 1000;
+
+        for (int i = 0; i < nOfThreads; i++) {
+            int finalI = i;
+            ths.add(new Thread(() -> {
+                try {
+                    for (int j = 0; j < nOfMessages; j++) {
+                        String message = "Message #" + finalI + "." + j;
+                        if (j % 2 == 0)
+                            transferQueue.put(message);
+                        else
+                            Assert.assertTrue(transferQueue.transfer(message, 10 * 1000));
+                    }
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }));
+            ths.add(new Thread(() -> {
+                try {
+                    for (int j = 0; j < nOfMessages; j++) {
+                        String message = transferQueue.take(10 * 1000);
+                        Assert.assertNotNull(message);
+                        Assert.assertTrue(received.add(message));
+                    }
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }));
+        }
+
+        for (Thread th : ths)
+            th.start();
+        for (Thread th : ths)
+            th.join();
+
+        Assert.assertEquals(nOfThreads * nOfMessages, received.size());
+        Assert.assertNull(transferQueue.take(0));
+    }
+}
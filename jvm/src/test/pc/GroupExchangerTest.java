@@ -0,0 +1,113 @@
+package pc;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class GroupExchangerTest {
+
+    @Test
+    public void singlePartyTest() throws InterruptedException {
+        GroupExchanger<String> exchanger = new GroupExchanger<>(1);
+        Assert.assertEquals(Optional.of(Arrays.asList("data")), exchanger.exchange(0, "data", 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidPartyTest() throws InterruptedException {
+        new GroupExchanger<String>(2).exchange(2, "data", 0);
+    }
+
+    @Test
+    public void timeoutTest() throws InterruptedException {
+        GroupExchanger<String> exchanger = new GroupExchanger<>(2);
+        Assert.assertFalse(exchanger.exchange(0, "data", 100).isPresent());
+
+        //The party that left isn't part of the next exchange
+        String[] values = new String[1];
+        Thread th = new Thread(() -> {
+            try {
+                values[0] = exchanger.exchange(0, "data0", 5000).get().get(1);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        th.start();
+        Assert.assertEquals(Arrays.asList("data0", "data1"), exchanger.exchange(1, "data1", 5000).get());
+        th.join();
+        Assert.assertEquals("data1", values[0]);
+    }
+
+    @Test
+    public void partyLeavingTest() throws InterruptedException {
+        GroupExchanger<Integer> exchanger = new GroupExchanger<>(3);
+        AtomicReferenceArray<List<Integer>> values = new AtomicReferenceArray<>(3);
+
+        Thread th1 = new Thread(() -> {
+            try {
+                values.set(1, exchanger.exchange(1, 1, 5000).get());
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        th1.start();
+        //Party 0 comes and leaves, while party 1 waits
+        Assert.assertFalse(exchanger.exchange(0, -1, 100).isPresent());
+
+        Thread th0 = new Thread(() -> {
+            try {
+                values.set(0, exchanger.exchange(0, 0, 5000).get());
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        th0.start();
+        values.set(2, exchanger.exchange(2, 2, 5000).get());
+        th0.join();
+        th1.join();
+
+        for (int i = 0; i < values.length(); i++)
+            Assert.assertEquals(Arrays.asList(0, 1, 2), values.get(i));
+    }
+
+    @Test
+    public void manyPartiesTest() throws InterruptedException {
+        final int nOfParties = 17;
+        final int nOfRounds = 1000;
+        GroupExchanger<Integer> exchanger = new GroupExchanger<>(nOfParties);
+        List<Thread> ths = new LinkedList<>();
+        int[] errors = new int[nOfParties];
+
+        for (int i = 0; i < nOfParties; i++) {
+            int finalI = i;
+            ths.add(new Thread(() -> {
+                try {
+                    for (int round = 0; round < nOfRounds; round++) {
+                        Optional<List<Integer>> res = exchanger.exchange(finalI, round * nOfParties + finalI, 5000);
+                        if (!res.isPresent()) {
+                            errors[finalI]++;
+                            continue;
+                        }
+                        //Every party gets every contribution of its own round
+                        for (int party = 0; party < nOfParties; party++)
+                            if (res.get().get(party) != round * nOfParties + party)
+                                errors[finalI]++;
+                    }
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }));
+        }
+        for (Thread th : ths)
+            th.start();
+        for (Thread th : ths)
+            th.join();
+
+        for (int error : errors)
+            Assert.assertEquals(0, error);
+    }
+}
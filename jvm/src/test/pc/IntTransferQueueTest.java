@@ -0,0 +1,101 @@
+package pc;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class IntTransferQueueTest {
+    private static final int EMPTY = -1;
+
+    @Test
+    public void putTakeTest() {
+        IntTransferQueue transferQueue = new IntTransferQueue(5);
+        Assert.assertEquals(8, transferQueue.capacity());
+        Assert.assertEquals(EMPTY, transferQueue.take(EMPTY));
+
+        //Wraps around the ring a few times
+        for (int lap = 0; lap < 3; lap++) {
+            for (int i = 0; i < 8; i++)
+                Assert.assertTrue(transferQueue.put(Integer.MAX_VALUE - i));
+            Assert.assertFalse(transferQueue.put(8));
+            Assert.assertEquals(8, transferQueue.size());
+
+            for (int i = 0; i < 8; i++)
+                Assert.assertEquals(Integer.MAX_VALUE - i, transferQueue.take(EMPTY));
+            Assert.assertEquals(EMPTY, transferQueue.take(EMPTY));
+            Assert.assertEquals(0, transferQueue.size());
+        }
+    }
+
+    @Test
+    public void timeoutTest() throws InterruptedException {
+        IntTransferQueue transferQueue = new IntTransferQueue(1);
+        Assert.assertEquals(EMPTY, transferQueue.take(100, EMPTY));
+        Assert.assertTrue(transferQueue.put(1, 100));
+        Assert.assertFalse(transferQueue.put(2, 100));
+        Assert.assertEquals(1, transferQueue.take(100, EMPTY));
+    }
+
+    @Test
+    public void timedTakeWaitsForPutTest() throws InterruptedException {
+        IntTransferQueue transferQueue = new IntTransferQueue(1);
+        Thread th = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+            transferQueue.put(42);
+        });
+        th.start();
+        Assert.assertEquals(42, transferQueue.take(5000, EMPTY));
+        th.join();
+    }
+
+    @Test
+    public void manyThreadsTest() throws InterruptedException {
+        IntTransferQueue transferQueue = new IntTransferQueue(64);
+        List<Thread> ths = new LinkedList<>();
+        final int nOfThreads = 4;
+        final int nOfMessages = 10000;
+        AtomicIntegerArray received = new AtomicIntegerArray(nOfThreads * nOfMessages);
+        AtomicLong taken = new AtomicLong();
+
+        for (int i = 0; i < nOfThreads; i++) {
+            int finalI = i;
+            ths.add(new Thread(() -> {
+                for (int j = 0; j < nOfMessages; j++) {
+                    try {
+                        transferQueue.put(finalI * nOfMessages + j, Long.MAX_VALUE / 2);
+                    } catch (InterruptedException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }));
+            ths.add(new Thread(() -> {
+                while (taken.get() < nOfThreads * nOfMessages) {
+                    int message = transferQueue.take(EMPTY);
+                    if (message == EMPTY) {
+                        Thread.yield();
+                        continue;
+                    }
+                    received.incrementAndGet(message);
+                    taken.incrementAndGet();
+                }
+            }));
+        }
+        for (Thread th : ths)
+            th.start();
+        for (Thread th : ths)
+            th.join();
+
+        //Every message came out exactly once
+        for (int i = 0; i < received.length(); i++)
+            Assert.assertEquals(1, received.get(i));
+        Assert.assertEquals(EMPTY, transferQueue.take(EMPTY));
+    }
+}
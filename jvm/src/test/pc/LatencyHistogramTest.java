@@ -0,0 +1,60 @@
+package pc;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentileTest() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++)
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+
+        //Every value is within about 6% of itself
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(1000, snapshot.getCount());
+        Assert.assertEquals(0.5005, snapshot.getMean(), 0.0001);
+        Assert.assertEquals(1.0, snapshot.getMax(), 0.0001);
+        Assert.assertEquals(0.5, snapshot.getPercentile(50), 0.5 * 0.07);
+        Assert.assertEquals(0.99, snapshot.getPercentile(99), 0.99 * 0.07);
+        Assert.assertEquals(1.0, snapshot.getPercentile(100), 0.0001);
+        Assert.assertEquals(0.001, snapshot.getPercentile(0), 0.001 * 0.07);
+    }
+
+    @Test
+    public void concurrentRecordTest() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 100000; j++)
+                    histogram.record(j);
+            });
+            threads[i].start();
+        }
+
+        //Snapshots taken while recording never stop the recording threads
+        while (threads[0].isAlive())
+            Assert.assertTrue(histogram.snapshot().getCount() <= 4 * 100000);
+        for (Thread thread : threads)
+            thread.join();
+        Assert.assertEquals(4 * 100000, histogram.snapshot().getCount());
+    }
+
+    @Test
+    public void emptyAndHugeValuesTest() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.snapshot().getPercentile(99), 0);
+
+        //Values beyond the last bucket are still counted, and max keeps the exact value
+        histogram.record(-1);
+        histogram.record(Long.MAX_VALUE);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(2, snapshot.getCount());
+        Assert.assertEquals(0, snapshot.getPercentile(50), 0);
+        Assert.assertEquals(TimeUnit.NANOSECONDS.toMillis(Long.MAX_VALUE), snapshot.getMax(), 1);
+    }
+}
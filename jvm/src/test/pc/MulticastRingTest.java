@@ -0,0 +1,183 @@
+package pc;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+public class MulticastRingTest {
+
+    @Test
+    public void publishPollTest() {
+        MulticastRing<Integer> ring = new MulticastRing<>(3);
+        Assert.assertEquals(4, ring.capacity());
+        //Nobody to hold the publisher back, nor to get the message
+        Assert.assertTrue(ring.publish(-1));
+
+        MulticastRing<Integer>.Subscriber subscriber1 = ring.subscribe();
+        MulticastRing<Integer>.Subscriber subscriber2 = ring.subscribe();
+        Assert.assertNull(subscriber1.poll());
+
+        //Wraps around the ring a few times
+        for (int lap = 0; lap < 3; lap++) {
+            for (int i = 0; i < 4; i++)
+                Assert.assertTrue(ring.publish(i));
+            Assert.assertFalse(ring.publish(4));
+
+            for (int i = 0; i < 4; i++)
+                Assert.assertEquals(Integer.valueOf(i), subscriber1.poll());
+            Assert.assertNull(subscriber1.poll());
+            //The slowest subscriber still holds the publisher back
+            Assert.assertFalse(ring.publish(4));
+
+            for (int i = 0; i < 4; i++)
+                Assert.assertEquals(Integer.valueOf(i), subscriber2.poll());
+            Assert.assertNull(subscriber2.poll());
+        }
+
+        subscriber2.unsubscribe();
+        for (int i = 0; i < 4; i++)
+            Assert.assertTrue(ring.publish(i));
+        Assert.assertFalse(ring.publish(4));
+    }
+
+    @Test
+    public void overwriteTest() {
+        MulticastRing<Integer> ring = new MulticastRing<>(8, OverflowPolicy.OVERWRITE, WaitStrategy.PARK);
+        MulticastRing<Integer>.Subscriber subscriber = ring.subscribe();
+        for (int i = 0; i < 20; i++)
+            Assert.assertTrue(ring.publish(i));
+
+        //The lapped subscriber skips to the oldest message in the ring
+        List<Integer> received = new ArrayList<>();
+        Integer message;
+        while ((message = subscriber.poll()) != null)
+            received.add(message);
+        Assert.assertEquals(Arrays.asList(12, 13, 14, 15, 16, 17, 18, 19), received);
+        Assert.assertEquals(12, subscriber.missed());
+    }
+
+    @Test
+    public void lateWriteTest() {
+        MulticastRing<Integer> ring = new MulticastRing<>(2, OverflowPolicy.OVERWRITE, WaitStrategy.PARK);
+        MulticastRing<Integer>.Subscriber subscriber = ring.subscribe();
+        long late = ring.claim();
+        ring.write(ring.claim(), 1);
+        ring.write(ring.claim(), 2);
+        //The publisher of the first message, a lap late, doesn't write over the one that lapped it
+        ring.write(late, 0);
+
+        Assert.assertEquals(Integer.valueOf(1), subscriber.poll());
+        Assert.assertEquals(Integer.valueOf(2), subscriber.poll());
+        Assert.assertNull(subscriber.poll());
+        Assert.assertEquals(1, subscriber.missed());
+    }
+
+    @Test
+    public void lappingPublishersTest() throws InterruptedException {
+        //A ring of two slots, so publishers a lap apart often write the same slot at once
+        MulticastRing<Integer> ring = new MulticastRing<>(2, OverflowPolicy.OVERWRITE, WaitStrategy.PARK);
+        MulticastRing<Integer>.Subscriber subscriber = ring.subscribe();
+        List<Thread> ths = new LinkedList<>();
+        final int nOfPublishers = 4;
+        final int nOfMessages = 50000;
+
+        for (int i = 0; i < nOfPublishers; i++) {
+            int finalI = i;
+            ths.add(new Thread(() -> {
+                for (int j = 0; j < nOfMessages; j++)
+                    Assert.assertTrue(ring.publish(finalI * nOfMessages + j));
+            }));
+        }
+        for (Thread th : ths)
+            th.start();
+        //Messages from each publisher come in the order they were published
+        int[] last = new int[nOfPublishers];
+        Arrays.fill(last, -1);
+        long received = 0;
+        boolean publishing = true;
+        while (publishing) {
+            publishing = ths.stream().anyMatch(Thread::isAlive);
+            Integer message;
+            while ((message = subscriber.poll()) != null) {
+                int publisher = message / nOfMessages;
+                Assert.assertTrue(message % nOfMessages > last[publisher]);
+                last[publisher] = message % nOfMessages;
+                received++;
+            }
+        }
+        for (Thread th : ths)
+            th.join();
+
+        //No slot was left behind with an older sequence, so every message was either read or counted as missed
+        Assert.assertEquals(nOfPublishers * nOfMessages, received + subscriber.missed());
+    }
+
+    @Test
+    public void timeoutTest() throws InterruptedException {
+        MulticastRing<Integer> ring = new MulticastRing<>(1);
+        MulticastRing<Integer>.Subscriber subscriber = ring.subscribe();
+        Assert.assertNull(subscriber.take(100));
+        Assert.assertTrue(ring.publish(1, 100));
+        Assert.assertFalse(ring.publish(2, 100));
+        Assert.assertEquals(Integer.valueOf(1), subscriber.take(100));
+    }
+
+    @Test
+    public void everySubscriberGetsEveryMessageTest() throws InterruptedException {
+        for (WaitStrategy waitStrategy : new WaitStrategy[]{WaitStrategy.PARK, WaitStrategy.YIELD}) {
+            MulticastRing<Integer> ring = new MulticastRing<>(64, OverflowPolicy.BLOCK, waitStrategy);
+            List<Thread> ths = new LinkedList<>();
+            final int nOfSubscribers = 3;
+            final int nOfPublishers = 2;
+            final int nOfMessages = 10000;
+            int[] errors = new int[nOfSubscribers];
+
+            for (int i = 0; i < nOfSubscribers; i++) {
+                int finalI = i;
+                MulticastRing<Integer>.Subscriber subscriber = ring.subscribe();
+                ths.add(new Thread(() -> {
+                    try {
+                        //Messages from each publisher come in the order they were published, with none missing
+                        int[] last = new int[nOfPublishers];
+                        Arrays.fill(last, -1);
+                        for (int j = 0; j < nOfPublishers * nOfMessages; j++) {
+                            Integer message = subscriber.take(5000);
+                            if (message == null) {
+                                errors[finalI]++;
+                                return;
+                            }
+                            int publisher = message / nOfMessages;
+                            if (message % nOfMessages != last[publisher] + 1)
+                                errors[finalI]++;
+                            last[publisher] = message % nOfMessages;
+                        }
+                    } catch (InterruptedException e) {
+                        e.printStackTrace();
+                    }
+                }));
+            }
+            for (int i = 0; i < nOfPublishers; i++) {
+                int finalI = i;
+                ths.add(new Thread(() -> {
+                    try {
+                        for (int j = 0; j < nOfMessages; j++)
+                            Assert.assertTrue(ring.publish(finalI * nOfMessages + j, 5000));
+                    } catch (InterruptedException e) {
+                        e.printStackTrace();
+                    }
+                }));
+            }
+            for (Thread th : ths)
+                th.start();
+            for (Thread th : ths)
+                th.join();
+
+            for (int error : errors)
+                Assert.assertEquals(0, error);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package pc;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+
+public class PromiseTest {
+
+    @Test
+    public void completeTest() throws Exception {
+        Promise<String> promise = new Promise<>();
+        Thread th = new Thread(() -> {
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+            promise.complete("value");
+        });
+        th.start();
+
+        Assert.assertEquals(Optional.of("value"), promise.get(5000));
+        Assert.assertFalse(promise.complete("other value"));
+        Assert.assertFalse(promise.tryCancel());
+        th.join();
+    }
+
+    @Test
+    public void timedOutWaitersAreRemovedTest() throws Exception {
+        Promise<String> promise = new Promise<>();
+        Thread th = new Thread(() -> {
+            try {
+                promise.get(Integer.MAX_VALUE);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+        th.start();
+        Thread.sleep(100);
+
+        //Polling a promise that stays incomplete leaves nothing behind but the thread still waiting
+        for (int i = 0; i < 1000; i++)
+            Assert.assertEquals(Optional.empty(), promise.get(1));
+        Assert.assertEquals(1, promise.waiterCount());
+
+        Assert.assertTrue(promise.complete("value"));
+        th.join();
+        Assert.assertEquals(0, promise.waiterCount());
+    }
+
+    @Test
+    public void cancelTest() throws Exception {
+        Promise<String> promise = new Promise<>();
+        final Exception[] received = new Exception[1];
+        promise.onComplete((result, exception) -> received[0] = exception);
+
+        Assert.assertTrue(promise.tryCancel());
+        Assert.assertTrue(received[0] instanceof CancellationException);
+
+        boolean cancelled = false;
+        try {
+            promise.get(1000);
+        } catch (CancellationException e) {
+            cancelled = true;
+        }
+        Assert.assertTrue(cancelled);
+    }
+
+    @Test
+    public void thenApplyAndComposeTest() throws Exception {
+        Promise<Integer> promise = new Promise<>();
+        Promise<Integer> inner = new Promise<>();
+        Result<String> applied = promise.thenApply(value -> "value " + value);
+        Result<Integer> composed = promise.thenCompose(value -> inner);
+
+        promise.complete(1);
+        Assert.assertEquals(Optional.of("value 1"), applied.get(0));
+        Assert.assertFalse(composed.isComplete());
+
+        inner.complete(2);
+        Assert.assertEquals(Optional.of(2), composed.get(0));
+
+        //Exceptions are propagated to the dependents
+        Promise<Integer> failed = new Promise<>();
+        Result<Integer> failedApplied = failed.thenApply(value -> value + 1);
+        failed.fail(new IllegalStateException());
+        boolean thrown = false;
+        try {
+            failedApplied.get(0);
+        } catch (IllegalStateException e) {
+            thrown = true;
+        }
+        Assert.assertTrue(thrown);
+    }
+
+    @Test
+    public void onCompleteAfterCompletionTest() {
+        Promise<Integer> promise = new Promise<>();
+        promise.complete(1);
+
+        final int[] received = {0};
+        promise.onComplete((result, exception) -> received[0] = result);
+        Assert.assertEquals(1, received[0]);
+    }
+
+    @Test
+    public void failingContinuationTest() {
+        Promise<Integer> promise = new Promise<>();
+        promise.onComplete((result, exception) -> {
+            throw new IllegalStateException("failed continuation");
+        });
+        final int[] received = {0};
+        promise.onComplete((result, exception) -> received[0] = result);
+
+        //Runs on the completing thread, which gets the failure as if it had ended it
+        Thread th = Thread.currentThread();
+        Thread.UncaughtExceptionHandler handler = th.getUncaughtExceptionHandler();
+        final Throwable[] reported = {null};
+        th.setUncaughtExceptionHandler((t, e) -> reported[0] = e);
+        try {
+            promise.complete(1);
+        } finally {
+            th.setUncaughtExceptionHandler(handler);
+        }
+        Assert.assertTrue(reported[0] instanceof IllegalStateException);
+        //The failing continuation doesn't stop the others
+        Assert.assertEquals(1, received[0]);
+    }
+
+    @Test
+    public void allOfTest() throws Exception {
+        Promise<Integer> first = new Promise<>();
+        Promise<Integer> second = new Promise<>();
+        Result<List<Integer>> all = Result.allOf(Arrays.asList(first, second));
+
+        second.complete(2);
+        Assert.assertFalse(all.isComplete());
+        first.complete(1);
+        Assert.assertEquals(Optional.of(Arrays.asList(1, 2)), all.get(0));
+
+        //Fails as soon as one fails
+        Promise<Integer> third = new Promise<>();
+        Promise<Integer> fourth = new Promise<>();
+        Result<List<Integer>> failedAll = Result.allOf(Arrays.asList(third, fourth));
+        fourth.fail(new IllegalStateException());
+        Assert.assertTrue(failedAll.isComplete());
+    }
+
+    @Test
+    public void anyOfTest() throws Exception {
+        Promise<Integer> first = new Promise<>();
+        Promise<Integer> second = new Promise<>();
+        Result<Integer> any = Result.anyOf(Arrays.asList(first, second));
+
+        Assert.assertFalse(any.isComplete());
+        second.complete(2);
+        first.complete(1);
+        Assert.assertEquals(Optional.of(2), any.get(0));
+    }
+}
@@ -0,0 +1,199 @@
+package pc;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+
+//Tests of the ResultExecutor contract, run against each executor by its own test class
+public abstract class ResultExecutorTest {
+
+    //Executor running at most maxPoolSize works at the same time
+    protected abstract <T> ResultExecutor<T> newExecutor(int maxPoolSize, int keepAliveTime);
+
+    @Test
+    public void singleThreadTest() throws Exception {
+        ResultExecutor executor = newExecutor(3, 10000);
+        Result result = executor.execute(() -> {
+            Thread.sleep(2000);
+            return true;
+        });
+        Thread.sleep(5000);
+        Assert.assertTrue(result.isComplete());
+    }
+
+    @Test
+    public void everyThreadFullTest() throws InterruptedException {
+        ResultExecutor executor = newExecutor(3, 10000);
+        Result result1 = executor.execute(() -> {
+            Thread.sleep(5000);
+            return true;
+        });
+        Result result2 = executor.execute(() -> {
+            Thread.sleep(5000);
+            return true;
+        });
+        Result result3 = executor.execute(() -> {
+            Thread.sleep(5000);
+            return true;
+        });
+        Result result4 = executor.execute(() -> {
+            Thread.sleep(5000);
+            return true;
+        });
+        Result result5 = executor.execute(() -> {
+            Thread.sleep(5000);
+            return true;
+        });
+        Thread.sleep(6000);
+        Assert.assertTrue(result1.isComplete());
+        Assert.assertTrue(result2.isComplete());
+        Assert.assertTrue(result3.isComplete());
+        Assert.assertFalse(result4.isComplete());
+        Thread.sleep(12000);
+        Assert.assertTrue(result5.isComplete());
+    }
+
+    @Test
+    public void awaitShutdownTest() throws InterruptedException {
+        ResultExecutor executor = newExecutor(3, 10000);
+        Result result1 = executor.execute(() -> {
+            Thread.sleep(5000);
+            return true;
+        });
+        Result result2 = executor.execute(() -> {
+            Thread.sleep(5000);
+            return true;
+        });
+        Result result3 = executor.execute(() -> {
+            Thread.sleep(5000);
+            return true;
+        });
+
+        Thread.sleep(1000);
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(6000));
+    }
+
+    @Test
+    public void shutdownAwaitingThreadsTest() throws InterruptedException {
+        ResultExecutor executor = newExecutor(3, 60000);
+        Result result = executor.execute(() -> true);
+
+        //The working thread is awaiting new work, shutdown has to wake it up instead of waiting for keepAliveTime
+        Thread.sleep(1000);
+        Assert.assertTrue(result.isComplete());
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(2000));
+    }
+
+    @Test
+    public void getAwaitsCompletionTest() throws Exception {
+        ResultExecutor<Integer> executor = newExecutor(3, 10000);
+        Result<Integer> result = executor.execute(() -> {
+            Thread.sleep(2000);
+            return 42;
+        });
+
+        //Timeout before the work completes
+        Assert.assertEquals(Optional.empty(), result.get(500));
+        Assert.assertFalse(result.isComplete());
+
+        //Await the rest of the work
+        Assert.assertEquals(Optional.of(42), result.get(5000));
+        Assert.assertTrue(result.isComplete());
+
+        //A null result doesn't throw
+        Result<Integer> nullResult = executor.execute(() -> null);
+        Assert.assertEquals(Optional.empty(), nullResult.get(5000));
+        Assert.assertTrue(nullResult.isComplete());
+    }
+
+    @Test
+    public void getRethrowsExceptionTest() throws Exception {
+        ResultExecutor<Integer> executor = newExecutor(3, 10000);
+        Result<Integer> result = executor.execute(() -> {
+            throw new IllegalStateException("failed work");
+        });
+
+        boolean thrown = false;
+        try {
+            result.get(5000);
+        } catch (IllegalStateException e) {
+            thrown = true;
+        }
+        Assert.assertTrue(thrown);
+        Assert.assertTrue(result.isComplete());
+    }
+
+    @Test
+    public void tryCancelTest() throws Exception {
+        ResultExecutor<Boolean> executor = newExecutor(1, 10000);
+        final boolean[] interrupted = {false};
+        Result<Boolean> running = executor.execute(() -> {
+            try {
+                Thread.sleep(10000);
+            } catch (InterruptedException e) {
+                interrupted[0] = true;
+                throw e;
+            }
+            return true;
+        });
+        Result<Boolean> queued = executor.execute(() -> true);
+        Thread.sleep(1000);
+
+        //Queued work is removed from the queue
+        Assert.assertTrue(queued.tryCancel());
+        Assert.assertTrue(queued.isComplete());
+        Assert.assertFalse(queued.tryCancel());
+
+        //Running work is interrupted
+        Assert.assertTrue(running.tryCancel());
+        Thread.sleep(1000);
+        Assert.assertTrue(interrupted[0]);
+
+        boolean cancelled = false;
+        try {
+            running.get(1000);
+        } catch (CancellationException e) {
+            cancelled = true;
+        }
+        Assert.assertTrue(cancelled);
+
+        //The working thread is still usable, and not interrupted
+        Result<Boolean> next = executor.execute(() -> !Thread.currentThread().isInterrupted());
+        Assert.assertEquals(Optional.of(true), next.get(5000));
+    }
+
+    @Test
+    public void continuationsTest() throws Exception {
+        ResultExecutor<Integer> executor = newExecutor(3, 10000);
+
+        //Fan out
+        List<Result<Integer>> results = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            int value = i;
+            results.add(executor.execute(() -> {
+                Thread.sleep(500);
+                return value;
+            }));
+        }
+
+        //Fan in, without a thread waiting for each result
+        final String[] continuationThread = new String[1];
+        Result<Integer> sum = Result.allOf(results).thenApply(values -> {
+            continuationThread[0] = Thread.currentThread().getName();
+            int total = 0;
+            for (int value : values)
+                total += value;
+            return total;
+        });
+        Result<Integer> doubled = sum.thenCompose(total -> executor.execute(() -> total * 2));
+
+        Assert.assertEquals(Optional.of(30), doubled.get(5000));
+        Assert.assertNotEquals(Thread.currentThread().getName(), continuationThread[0]);
+    }
+}
@@ -0,0 +1,93 @@
+package pc;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RingTransferQueueTest {
+
+    @Test
+    public void putTakeTest() {
+        RingTransferQueue<Integer> transferQueue = new RingTransferQueue<>(5);
+        Assert.assertEquals(8, transferQueue.capacity());
+        Assert.assertNull(transferQueue.take());
+
+        //Wraps around the ring a few times
+        for (int lap = 0; lap < 3; lap++) {
+            for (int i = 0; i < 8; i++)
+                Assert.assertTrue(transferQueue.put(i));
+            Assert.assertFalse(transferQueue.put(8));
+            Assert.assertEquals(8, transferQueue.size());
+
+            for (int i = 0; i < 8; i++)
+                Assert.assertEquals(Integer.valueOf(i), transferQueue.take());
+            Assert.assertNull(transferQueue.take());
+            Assert.assertEquals(0, transferQueue.size());
+        }
+    }
+
+    @Test
+    public void capacityOneTest() {
+        RingTransferQueue<Integer> transferQueue = new RingTransferQueue<>(1);
+        Assert.assertEquals(1, transferQueue.capacity());
+
+        for (int lap = 0; lap < 3; lap++) {
+            Assert.assertTrue(transferQueue.put(lap));
+            Assert.assertFalse(transferQueue.put(-1));
+            Assert.assertEquals(1, transferQueue.size());
+
+            Assert.assertEquals(Integer.valueOf(lap), transferQueue.take());
+            Assert.assertNull(transferQueue.take());
+            Assert.assertEquals(0, transferQueue.size());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidCapacityTest() {
+        new RingTransferQueue<Integer>(0);
+    }
+
+    @Test
+    public void manyThreadsTest() throws InterruptedException {
+        RingTransferQueue<Integer> transferQueue = new RingTransferQueue<>(64);
+        List<Thread> ths = new LinkedList<>();
+        final int nOfThreads = 4;
+        final int nOfMessages = 10000;
+        AtomicIntegerArray received = new AtomicIntegerArray(nOfThreads * nOfMessages);
+        AtomicLong taken = new AtomicLong();
+
+        for (int i = 0; i < nOfThreads; i++) {
+            int finalI = i;
+            ths.add(new Thread(() -> {
+                for (int j = 0; j < nOfMessages; j++) {
+                    while (!transferQueue.put(finalI * nOfMessages + j))
+                        Thread.yield();
+                }
+            }));
+            ths.add(new Thread(() -> {
+                while (taken.get() < nOfThreads * nOfMessages) {
+                    Integer message = transferQueue.take();
+                    if (message == null) {
+                        Thread.yield();
+                        continue;
+                    }
+                    received.incrementAndGet(message);
+                    taken.incrementAndGet();
+                }
+            }));
+        }
+        for (Thread th : ths)
+            th.start();
+        for (Thread th : ths)
+            th.join();
+
+        //Every message came out exactly once
+        for (int i = 0; i < received.length(); i++)
+            Assert.assertEquals(1, received.get(i));
+        Assert.assertNull(transferQueue.take());
+    }
+}
@@ -1,10 +1,15 @@
 package pc;
 
+import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 public class SafeTransferQueueTest {
     static int num = 1;
@@ -72,6 +77,160 @@ public class SafeTransferQueueTest {
         assert true;
     }
 
+    @Test
+    public void putAllDrainToTest() {
+        SafeTransferQueue<Integer> transferQueue = new SafeTransferQueue<>();
+        transferQueue.putAll(Arrays.asList(0, 1, 2, 3, 4));
+        transferQueue.put(5);
+        transferQueue.putAll(Collections.emptyList());
+
+        List<Integer> batch = new ArrayList<>();
+        Assert.assertEquals(4, transferQueue.drainTo(batch, 4));
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3), batch);
+        Assert.assertEquals(Integer.valueOf(4), transferQueue.take());
+        batch.clear();
+        Assert.assertEquals(1, transferQueue.drainTo(batch, 10));
+        Assert.assertEquals(Arrays.asList(5), batch);
+        Assert.assertEquals(0, transferQueue.drainTo(batch, 10));
+        Assert.assertNull(transferQueue.take());
+    }
+
+    @Test
+    public void concurrentPutAllDrainToTest() throws InterruptedException {
+        SafeTransferQueue<Integer> transferQueue = new SafeTransferQueue<>();
+        List<Thread> ths = new LinkedList<>();
+        List<List<Integer>> batches = Collections.synchronizedList(new ArrayList<>());
+        final int nOfThreads = 4;
+        final int nOfBatches = 1000;
+
+        for (int i = 0; i < nOfThreads; i++) {
+            int finalI = i;
+            ths.add(new Thread(() -> {
+                for (int j = 0; j < nOfBatches; j++) {
+                    int first = (finalI * nOfBatches + j) * 3;
+                    transferQueue.putAll(Arrays.asList(first, first + 1, first + 2));
+                }
+            }));
+            ths.add(new Thread(() -> {
+                int taken = 0;
+                while (taken < nOfBatches * 3) {
+                    List<Integer> batch = new ArrayList<>();
+                    taken += transferQueue.drainTo(batch, 3);
+                    batches.add(batch);
+                }
+            }));
+        }
+        for (Thread th : ths)
+            th.start();
+        for (Thread th : ths)
+            th.join();
+
+        //Every message came out once, and a batch put together stays in order
+        boolean[] seen = new boolean[nOfThreads * nOfBatches * 3];
+        for (List<Integer> batch : batches) {
+            for (int k = 0; k < batch.size(); k++) {
+                Assert.assertFalse(seen[batch.get(k)]);
+                seen[batch.get(k)] = true;
+                if (k > 0 && batch.get(k) % 3 != 0)
+                    Assert.assertEquals(batch.get(k - 1) + 1, (int) batch.get(k));
+            }
+        }
+        for (boolean s : seen)
+            Assert.assertTrue(s);
+    }
+
+    @Test
+    public void timedTakeTest() throws InterruptedException {
+        for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+            SafeTransferQueue<String> transferQueue = new SafeTransferQueue<>(waitStrategy);
+            Assert.assertNull(transferQueue.take(0));
+            Assert.assertNull(transferQueue.take(100));
+
+            Thread th = new Thread(() -> {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+                transferQueue.put("PutMessage");
+            });
+            th.start();
+            Assert.assertEquals("PutMessage", transferQueue.take(5000));
+            th.join();
+        }
+    }
+
+    @Test
+    public void timedDrainToTest() throws InterruptedException {
+        for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+            SafeTransferQueue<Integer> transferQueue = new SafeTransferQueue<>(waitStrategy);
+            List<Integer> batch = new ArrayList<>();
+            Assert.assertEquals(0, transferQueue.drainTo(batch, 10, 100));
+            Assert.assertTrue(batch.isEmpty());
+
+            Thread th = new Thread(() -> {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+                transferQueue.putAll(Arrays.asList(0, 1, 2));
+            });
+            th.start();
+            Assert.assertEquals(2, transferQueue.drainTo(batch, 2, 5000));
+            Assert.assertEquals(Arrays.asList(0, 1), batch);
+            th.join();
+
+            //Already there, so no waiting
+            Assert.assertEquals(1, transferQueue.drainTo(batch, 10, 5000));
+            Assert.assertEquals(Arrays.asList(0, 1, 2), batch);
+        }
+    }
+
+    @Test
+    public void manyTimedTakersTest() throws InterruptedException {
+        SafeTransferQueue<Integer> transferQueue = new SafeTransferQueue<>();
+        List<Thread> ths = new LinkedList<>();
+        final int nOfThreads = 4;
+        final int nOfMessages = 10000;
+        AtomicIntegerArray received = new AtomicIntegerArray(nOfThreads * nOfMessages);
+        AtomicInteger taken = new AtomicInteger();
+
+        for (int i = 0; i < nOfThreads; i++) {
+            int finalI = i;
+            ths.add(new Thread(() -> {
+                for (int j = 0; j < nOfMessages; j++) {
+                    transferQueue.put(finalI * nOfMessages + j);
+                    //Lets the takers run out of messages and park now and then
+                    if (j % 1000 == 0)
+                        Thread.yield();
+                }
+            }));
+            ths.add(new Thread(() -> {
+                try {
+                    while (taken.get() < nOfThreads * nOfMessages) {
+                        Integer message = transferQueue.take(10);
+                        if (message != null) {
+                            received.incrementAndGet(message);
+                            taken.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }));
+        }
+        for (Thread th : ths)
+            th.start();
+        for (Thread th : ths)
+            th.join();
+
+        //Every message came out exactly once
+        for (int i = 0; i < received.length(); i++)
+            Assert.assertEquals(1, received.get(i));
+        Assert.assertNull(transferQueue.take());
+    }
+
     private void TakeMessage(SafeTransferQueue<String> transferQueue, String expectedValue, List<Thread> ths) throws InterruptedException {
         Thread th = new Thread(() -> {
             String res = transferQueue.take();
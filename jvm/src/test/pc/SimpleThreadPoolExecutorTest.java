@@ -5,6 +5,7 @@ import org.junit.platform.commons.logging.Logger;
 import org.junit.platform.commons.logging.LoggerFactory;
 
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static junit.framework.TestCase.assertEquals;
 import static junit.framework.TestCase.assertTrue;
@@ -110,4 +111,211 @@ public class SimpleThreadPoolExecutorTest {
         logger.info(() -> "task3 should have the same id as task1");
         assertEquals(task1ID[0], task3ID[0]);
     }
+
+    @Test
+    public void manySubmittersTest() throws InterruptedException {
+        SimpleThreadPoolExecutor executor = new SimpleThreadPoolExecutor(2, 8000);
+        AtomicInteger runs = new AtomicInteger();
+        Thread[] submitters = new Thread[8];
+
+        //8 submitters compete for 2 working threads, waiting long enough for every command to get one
+        for (int i = 0; i < submitters.length; i++) {
+            submitters[i] = new Thread(() -> {
+                for (int j = 0; j < 100; j++) {
+                    try {
+                        assertTrue(executor.execute(runs::incrementAndGet, 10000));
+                    } catch (InterruptedException e) {
+                        e.printStackTrace();
+                    }
+                }
+            });
+            submitters[i].start();
+        }
+        for (Thread submitter : submitters)
+            submitter.join();
+
+        executor.Shutdown();
+        assertTrue(executor.awaitTermination(10000));
+        assertEquals(800, runs.get());
+        assertEquals(0, executor.getPoolSize());
+    }
+
+    @Test
+    public void shutdownRejectsWaitingSubmitterTest() throws InterruptedException {
+        SimpleThreadPoolExecutor executor = new SimpleThreadPoolExecutor(1, 8000);
+        executor.execute(() -> {
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }, 1000);
+
+        boolean[] rejected = new boolean[1];
+        Thread submitter = new Thread(() -> {
+            try {
+                executor.execute(() -> System.out.println("task2"), 10000);
+            } catch (RejectedExecutionException e) {
+                rejected[0] = true;
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        submitter.start();
+
+        //the submitter is waiting for the only working thread, and leaves as soon as the pool shuts down
+        Thread.sleep(500);
+        executor.Shutdown();
+        submitter.join(1000);
+        assertTrue(rejected[0]);
+        assertTrue(executor.awaitTermination(5000));
+    }
+
+    @Test
+    public void corePoolSizeTest() throws InterruptedException {
+        SimpleThreadPoolExecutor executor = new SimpleThreadPoolExecutor(2, 4, 500, false);
+        for (int i = 0; i < 4; i++) {
+            executor.execute(() -> {
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }, 1000);
+        }
+        assertEquals(4, executor.getPoolSize());
+
+        //after keepAliveTime only the threads above the core size end, the core ones stay warm
+        Thread.sleep(2000);
+        assertEquals(2, executor.getPoolSize());
+        assertEquals(2, executor.getStats().getIdleThreads());
+
+        executor.Shutdown();
+        assertTrue(executor.awaitTermination(5000));
+    }
+
+    @Test
+    public void adaptivePoolLimitTest() throws InterruptedException {
+        SimpleThreadPoolExecutor executor = new SimpleThreadPoolExecutor(1, 8, 8000, true);
+        assertEquals(1, executor.getStats().getPoolLimit());
+
+        //commands that block, not use the CPU, get done faster with more threads, so the limit keeps going up
+        long limit = System.currentTimeMillis() + 20 * SimpleThreadPoolExecutor.ADJUST_INTERVAL;
+        while (System.currentTimeMillis() < limit) {
+            executor.execute(() -> {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }, 1000);
+        }
+        SimpleThreadPoolExecutor.Stats stats = executor.getStats();
+        assertTrue(stats.getPoolLimit() > 2);
+        assertTrue(stats.getAverageWaitTime() > 0);
+
+        //with nobody waiting for a thread the limit comes back down
+        int grownLimit = stats.getPoolLimit();
+        long idleLimit = System.currentTimeMillis() + 10 * SimpleThreadPoolExecutor.ADJUST_INTERVAL;
+        while (System.currentTimeMillis() < idleLimit) {
+            executor.execute(() -> { }, 1000);
+            Thread.sleep(20);
+        }
+        assertTrue(executor.getStats().getPoolLimit() < grownLimit);
+
+        executor.Shutdown();
+        assertTrue(executor.awaitTermination(5000));
+    }
+
+    @Test
+    public void statsTest() throws InterruptedException {
+        SimpleThreadPoolExecutor executor = new SimpleThreadPoolExecutor(1, 8000);
+        executor.execute(() -> {
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }, 1000);
+        Thread submitter = new Thread(() -> {
+            try {
+                executor.execute(() -> System.out.println("task2"), 5000);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        submitter.start();
+        Thread.sleep(500);
+
+        SimpleThreadPoolExecutor.Stats stats = executor.getStats();
+        assertEquals(1, stats.getPoolSize());
+        assertEquals(1, stats.getActiveThreads());
+        assertEquals(1, stats.getWaitingSubmitters());
+        assertEquals(2, stats.getSubmittedCommands());
+
+        submitter.join();
+        Thread.sleep(500);
+        stats = executor.getStats();
+        assertEquals(0, stats.getActiveThreads());
+        assertEquals(0, stats.getWaitingSubmitters());
+        assertEquals(2, stats.getCompletedCommands());
+        assertTrue(stats.getAverageWaitTime() >= 400);
+
+        executor.Shutdown();
+        assertTrue(executor.awaitTermination(5000));
+    }
+
+    @Test
+    public void commandErrorLeavesPoolTest() throws InterruptedException {
+        SimpleThreadPoolExecutor executor = new SimpleThreadPoolExecutor(1, 8000);
+        //An Error isn't caught, so it ends the working thread
+        executor.execute(() -> {
+            throw new AssertionError("failed task");
+        }, 1000);
+        Thread.sleep(200);
+        assertEquals(0, executor.getPoolSize());
+
+        //Its place in the pool is free for a new working thread
+        assertTrue(executor.execute(() -> System.out.println("task2"), 1000));
+        executor.Shutdown();
+        assertTrue(executor.awaitTermination(5000));
+        assertEquals(0, executor.getPoolSize());
+    }
+
+    @Test
+    public void metricsTest() throws InterruptedException {
+        SimpleThreadPoolExecutor executor = new SimpleThreadPoolExecutor(1, 8000);
+        executor.execute(() -> {
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }, 1000);
+        //Keeps the only thread busy while task3 is submitted
+        executor.execute(() -> {
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+            throw new IllegalStateException("failed task");
+        }, 1000);
+        boolean ret = executor.execute(() -> System.out.println("task3"), 0);
+        assertFalse(ret);
+        Thread.sleep(500);
+
+        ExecutorMetrics.Snapshot metrics = executor.getMetrics();
+        assertEquals(3, metrics.getSubmitted());
+        assertEquals(1, metrics.getCompleted());
+        assertEquals(1, metrics.getFailed());
+        assertEquals(1, metrics.getRejected());
+        assertEquals(0, metrics.getQueueDepth());
+        assertEquals(2, metrics.getQueueWait().getCount());
+        assertTrue(metrics.getQueueWait().getMax() >= 400);
+        assertEquals(2, metrics.getRunTime().getCount());
+
+        executor.Shutdown();
+        assertTrue(executor.awaitTermination(5000));
+    }
 }
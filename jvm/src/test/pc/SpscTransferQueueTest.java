@@ -0,0 +1,63 @@
+package pc;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SpscTransferQueueTest {
+
+    @Test
+    public void putTakeTest() {
+        SpscTransferQueue<Integer> transferQueue = new SpscTransferQueue<>(3);
+        Assert.assertEquals(4, transferQueue.capacity());
+        Assert.assertNull(transferQueue.take());
+
+        //Wraps around the ring a few times
+        for (int lap = 0; lap < 3; lap++) {
+            for (int i = 0; i < 4; i++)
+                Assert.assertTrue(transferQueue.put(i));
+            Assert.assertFalse(transferQueue.put(4));
+
+            for (int i = 0; i < 4; i++)
+                Assert.assertEquals(Integer.valueOf(i), transferQueue.take());
+            Assert.assertNull(transferQueue.take());
+        }
+    }
+
+    @Test
+    public void factoryTest() {
+        Assert.assertTrue(MessageQueue.unbounded() instanceof SafeTransferQueue);
+        Assert.assertTrue(MessageQueue.bounded(16) instanceof RingTransferQueue);
+        Assert.assertTrue(MessageQueue.singleProducerSingleConsumer(16) instanceof SpscTransferQueue);
+    }
+
+    @Test
+    public void producerConsumerTest() throws InterruptedException {
+        MessageQueue<Integer> transferQueue = MessageQueue.singleProducerSingleConsumer(64);
+        final int nOfMessages = 100000;
+        int[] errors = new int[1];
+
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < nOfMessages; i++) {
+                while (!transferQueue.put(i))
+                    Thread.yield();
+            }
+        });
+        Thread consumer = new Thread(() -> {
+            //Messages come out in the order they were put, with none missing
+            for (int i = 0; i < nOfMessages; i++) {
+                Integer message;
+                while ((message = transferQueue.take()) == null)
+                    Thread.yield();
+                if (message != i)
+                    errors[0]++;
+            }
+        });
+        producer.start();
+        consumer.start();
+        producer.join();
+        consumer.join();
+
+        Assert.assertEquals(0, errors[0]);
+        Assert.assertNull(transferQueue.take());
+    }
+}
@@ -3,69 +3,380 @@ package pc;
 import org.junit.Assert;
 import org.junit.Test;
 
-public class ThreadPoolExecutorTest {
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ThreadPoolExecutorTest extends ResultExecutorTest {
+
+    @Override
+    protected <T> ResultExecutor<T> newExecutor(int maxPoolSize, int keepAliveTime) {
+        return new ThreadPoolExecutor<>(maxPoolSize, keepAliveTime);
+    }
 
     @Test
-    public void singleThreadTest() throws Exception {
-        ThreadPoolExecutor executor = new ThreadPoolExecutor(3, 10000);
-        Result result = executor.execute(() -> {
-            Thread.sleep(2000);
-            return true;
+    public void workStealingTest() throws InterruptedException {
+        ThreadPoolExecutor<Long> executor = new ThreadPoolExecutor<>(4, 10000, true);
+        List<Result<Long>> subResults = Collections.synchronizedList(new LinkedList<>());
+
+        //Work given from inside a working thread goes to its own deque, the other threads have to steal it
+        Result<Long> result = executor.execute(() -> {
+            for (int i = 0; i < 8; i++) {
+                subResults.add(executor.execute(() -> {
+                    Thread.sleep(2000);
+                    return Thread.currentThread().getId();
+                }));
+            }
+            return Thread.currentThread().getId();
         });
-        Thread.sleep(5000);
+
+        //8 works of 2 seconds on 4 threads should take about 4 seconds, not 16
+        Thread.sleep(7000);
         Assert.assertTrue(result.isComplete());
+        Assert.assertEquals(8, subResults.size());
+        for (Result<Long> subResult : subResults)
+            Assert.assertTrue(subResult.isComplete());
+
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(15000));
     }
 
     @Test
-    public void everyThreadFullTest() throws InterruptedException {
-        ThreadPoolExecutor executor = new ThreadPoolExecutor(3, 10000);
-        Result result1 = executor.execute(() -> {
-            Thread.sleep(5000);
-            return true;
+    public void executeAllTest() throws Exception {
+        ThreadPoolExecutor<Integer> executor = new ThreadPoolExecutor<>(3, 10000);
+        List<Callable<Integer>> commands = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            int value = i;
+            commands.add(() -> {
+                Thread.sleep(500);
+                return value;
+            });
+        }
+
+        Batch<Integer> batch = executor.executeAll(commands);
+        Assert.assertEquals(10, batch.getResults().size());
+        batch.allComplete().get(10000);
+        Assert.assertTrue(batch.allComplete().isComplete());
+        Optional<List<Integer>> values = batch.firstFailure().get(0);
+        Assert.assertTrue(values.isPresent());
+        for (int i = 0; i < 10; i++)
+            Assert.assertEquals(Integer.valueOf(i), values.get().get(i));
+    }
+
+    @Test
+    public void executeAllFirstFailureTest() throws Exception {
+        ThreadPoolExecutor<Integer> executor = new ThreadPoolExecutor<>(3, 10000);
+        List<Callable<Integer>> commands = new ArrayList<>();
+        commands.add(() -> {
+            throw new IllegalStateException("failed work");
         });
-        Result result2 = executor.execute(() -> {
-            Thread.sleep(5000);
+        for (int i = 0; i < 5; i++) {
+            commands.add(() -> {
+                Thread.sleep(3000);
+                return 0;
+            });
+        }
+
+        //firstFailure completes as soon as the first work fails, while the others are still running
+        Batch<Integer> batch = executor.executeAll(commands);
+        boolean thrown = false;
+        try {
+            batch.firstFailure().get(2000);
+        } catch (IllegalStateException e) {
+            thrown = true;
+        }
+        Assert.assertTrue(thrown);
+        Assert.assertFalse(batch.allComplete().isComplete());
+        Assert.assertTrue(batch.tryCancel() > 0);
+        batch.allComplete().get(5000);
+        Assert.assertTrue(batch.allComplete().isComplete());
+    }
+
+    @Test
+    public void boundedQueueRejectTest() {
+        ThreadPoolExecutor<Boolean> executor = newBoundedExecutor(RejectionPolicy.REJECT, 0);
+
+        boolean rejected = false;
+        try {
+            executor.execute(() -> true);
+        } catch (RejectedExecutionException e) {
+            rejected = true;
+        }
+        Assert.assertTrue(rejected);
+        Assert.assertEquals(1, executor.getRejectionCount(RejectionPolicy.REJECT));
+    }
+
+    @Test
+    public void boundedQueueCallerRunsTest() throws Exception {
+        ThreadPoolExecutor<Boolean> executor = newBoundedExecutor(RejectionPolicy.CALLER_RUNS, 0);
+        Thread caller = Thread.currentThread();
+
+        Result<Boolean> result = executor.execute(() -> Thread.currentThread() == caller);
+        Assert.assertTrue(result.isComplete());
+        Assert.assertEquals(Optional.of(true), result.get(0));
+        Assert.assertEquals(1, executor.getRejectionCount(RejectionPolicy.CALLER_RUNS));
+    }
+
+    @Test
+    public void boundedQueueDropOldestTest() throws Exception {
+        ThreadPoolExecutor<Boolean> executor = new ThreadPoolExecutor<>(1, 10000, false, 1, RejectionPolicy.DROP_OLDEST, 0);
+        executor.execute(() -> {
+            Thread.sleep(2000);
             return true;
         });
-        Result result3 = executor.execute(() -> {
-            Thread.sleep(5000);
+        Result<Boolean> oldest = executor.execute(() -> true);
+        Result<Boolean> newest = executor.execute(() -> true);
+
+        //The oldest queued work is discarded to make room for the newest
+        boolean rejected = false;
+        try {
+            oldest.get(0);
+        } catch (RejectedExecutionException e) {
+            rejected = true;
+        }
+        Assert.assertTrue(rejected);
+        Assert.assertEquals(Optional.of(true), newest.get(5000));
+        Assert.assertEquals(1, executor.getRejectionCount(RejectionPolicy.DROP_OLDEST));
+    }
+
+    @Test
+    public void boundedQueueDropOldestWithoutQueueTest() throws Exception {
+        ThreadPoolExecutor<Boolean> executor = new ThreadPoolExecutor<>(1, 10000, false, 0, RejectionPolicy.DROP_OLDEST, 0);
+        executor.execute(() -> {
+            Thread.sleep(2000);
             return true;
         });
-        Result result4 = executor.execute(() -> {
-            Thread.sleep(5000);
+
+        //No room in the queue and nothing in it to drop, so the new work is the one discarded
+        Result<Boolean> newest = executor.execute(() -> true);
+        boolean rejected = false;
+        try {
+            newest.get(0);
+        } catch (RejectedExecutionException e) {
+            rejected = true;
+        }
+        Assert.assertTrue(rejected);
+        Assert.assertEquals(0, executor.getMetrics().getQueueDepth());
+        Assert.assertEquals(1, executor.getMetrics().getRejected());
+    }
+
+    @Test
+    public void boundedQueueRejectBatchTest() {
+        ThreadPoolExecutor<Boolean> executor = newBoundedExecutor(RejectionPolicy.REJECT, 0);
+        Batch<Boolean> batch = executor.executeAll(Arrays.asList(() -> true, () -> true, () -> true));
+
+        //Every work of the batch is counted once, in both counters
+        Assert.assertTrue(batch.allComplete().isComplete());
+        Assert.assertEquals(3, executor.getRejectionCount(RejectionPolicy.REJECT));
+        Assert.assertEquals(3, executor.getMetrics().getRejected());
+    }
+
+    @Test
+    public void boundedQueueBlockTest() throws Exception {
+        ThreadPoolExecutor<Boolean> executor = newBoundedExecutor(RejectionPolicy.BLOCK, 500);
+
+        //Blocks until the timeout, then rejects
+        boolean rejected = false;
+        try {
+            executor.execute(() -> true);
+        } catch (RejectedExecutionException e) {
+            rejected = true;
+        }
+        Assert.assertTrue(rejected);
+        Assert.assertEquals(1, executor.getRejectionCount(RejectionPolicy.BLOCK));
+        Assert.assertEquals(1, executor.getRejectionCount(RejectionPolicy.REJECT));
+
+        //Blocks until the running work completes and the queued one is taken
+        ThreadPoolExecutor<Boolean> longerExecutor = newBoundedExecutor(RejectionPolicy.BLOCK, 5000);
+        Result<Boolean> result = longerExecutor.execute(() -> true);
+        Assert.assertEquals(Optional.of(true), result.get(5000));
+    }
+
+    //A pool of one busy thread and a full queue of one work
+    private ThreadPoolExecutor<Boolean> newBoundedExecutor(RejectionPolicy policy, int blockTimeout) {
+        ThreadPoolExecutor<Boolean> executor = new ThreadPoolExecutor<>(1, 10000, false, 1, policy, blockTimeout);
+        executor.execute(() -> {
+            Thread.sleep(2000);
             return true;
         });
-        Result result5 = executor.execute(() -> {
-            Thread.sleep(5000);
-            return true;
+        executor.execute(() -> true);
+        return executor;
+    }
+
+    @Test
+    public void priorityTest() throws Exception {
+        ThreadPoolExecutor<Integer> executor = new ThreadPoolExecutor<>(1, 10000);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        executor.execute(() -> {
+            Thread.sleep(500);
+            return 0;
         });
-        Thread.sleep(6000);
-        Assert.assertTrue(result1.isComplete());
-        Assert.assertTrue(result2.isComplete());
-        Assert.assertTrue(result3.isComplete());
-        Assert.assertFalse(result4.isComplete());
-        Thread.sleep(12000);
-        Assert.assertTrue(result5.isComplete());
+
+        //Queued while the only thread is busy, low priority first
+        executor.execute(() -> order.add(ThreadPoolExecutor.LOW_PRIORITY) ? 0 : 0, ThreadPoolExecutor.LOW_PRIORITY);
+        executor.execute(() -> order.add(ThreadPoolExecutor.NORMAL_PRIORITY) ? 0 : 0);
+        Result<Integer> last = executor.execute(() -> order.add(ThreadPoolExecutor.HIGH_PRIORITY) ? 0 : 0,
+                ThreadPoolExecutor.HIGH_PRIORITY);
+        Assert.assertEquals(1, executor.getQueueDepth(ThreadPoolExecutor.LOW_PRIORITY));
+        Assert.assertEquals(1, executor.getQueueDepth(ThreadPoolExecutor.HIGH_PRIORITY));
+
+        last.get(5000);
+        Thread.sleep(500);
+        Assert.assertEquals(Arrays.asList(ThreadPoolExecutor.HIGH_PRIORITY, ThreadPoolExecutor.NORMAL_PRIORITY,
+                ThreadPoolExecutor.LOW_PRIORITY), order);
+        Assert.assertEquals(0, executor.getQueueDepth(ThreadPoolExecutor.LOW_PRIORITY));
+        Assert.assertTrue(executor.getAverageWaitTime(ThreadPoolExecutor.LOW_PRIORITY) >=
+                executor.getAverageWaitTime(ThreadPoolExecutor.HIGH_PRIORITY));
+        Assert.assertTrue(executor.getMaxWaitTime(ThreadPoolExecutor.LOW_PRIORITY) >= 400);
     }
 
     @Test
-    public void awaitShutdownTest() throws InterruptedException {
-        ThreadPoolExecutor executor = new ThreadPoolExecutor(3, 10000);
-        Result result1 = executor.execute(() -> {
-            Thread.sleep(5000);
-            return true;
+    public void priorityAgingTest() throws Exception {
+        ThreadPoolExecutor<Integer> executor = new ThreadPoolExecutor<>(1, 10000);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        executor.execute(() -> {
+            Thread.sleep(4 * ThreadPoolExecutor.AGING_TIME);
+            return 0;
         });
-        Result result2 = executor.execute(() -> {
-            Thread.sleep(5000);
-            return true;
+
+        //Low priority work that waited more than two aging times longer goes before high priority work
+        executor.execute(() -> order.add(ThreadPoolExecutor.LOW_PRIORITY) ? 0 : 0, ThreadPoolExecutor.LOW_PRIORITY);
+        Thread.sleep(3 * ThreadPoolExecutor.AGING_TIME + 500);
+        Result<Integer> last = executor.execute(() -> order.add(ThreadPoolExecutor.HIGH_PRIORITY) ? 0 : 0,
+                ThreadPoolExecutor.HIGH_PRIORITY);
+
+        last.get(5000);
+        Thread.sleep(500);
+        Assert.assertEquals(Arrays.asList(ThreadPoolExecutor.LOW_PRIORITY, ThreadPoolExecutor.HIGH_PRIORITY), order);
+    }
+
+    @Test
+    public void scheduleTest() throws Exception {
+        ThreadPoolExecutor<Long> executor = new ThreadPoolExecutor<>(2, 10000);
+        long start = System.currentTimeMillis();
+        Result<Long> result = executor.schedule(System::currentTimeMillis, 1000);
+
+        Thread.sleep(500);
+        Assert.assertFalse(result.isComplete());
+        Optional<Long> ranAt = result.get(5000);
+        Assert.assertTrue(ranAt.isPresent());
+        Assert.assertTrue(ranAt.get() - start >= 1000);
+        Assert.assertTrue(ranAt.get() - start < 1000 + 500);
+    }
+
+    @Test
+    public void scheduleCancelTest() throws Exception {
+        ThreadPoolExecutor<Boolean> executor = new ThreadPoolExecutor<>(2, 10000);
+        AtomicInteger runs = new AtomicInteger();
+        Result<Boolean> result = executor.schedule(() -> runs.incrementAndGet() > 0, 500);
+
+        Assert.assertTrue(result.tryCancel());
+        Thread.sleep(1000);
+        Assert.assertEquals(0, runs.get());
+        boolean cancelled = false;
+        try {
+            result.get(0);
+        } catch (CancellationException e) {
+            cancelled = true;
+        }
+        Assert.assertTrue(cancelled);
+    }
+
+    @Test
+    public void scheduleAtFixedRateTest() throws Exception {
+        ThreadPoolExecutor<Boolean> executor = new ThreadPoolExecutor<>(2, 10000);
+        AtomicInteger runs = new AtomicInteger();
+        Result<Boolean> result = executor.scheduleAtFixedRate(() -> runs.incrementAndGet() > 0, 0, 200);
+
+        //Runs at 0, 200, 400, ... 1000 milliseconds, and never completes by itself
+        Thread.sleep(1100);
+        Assert.assertFalse(result.isComplete());
+        Assert.assertTrue(result.tryCancel());
+        int runsWhenCancelled = runs.get();
+        Assert.assertTrue(runsWhenCancelled >= 5 && runsWhenCancelled <= 7);
+        Thread.sleep(500);
+        Assert.assertEquals(runsWhenCancelled, runs.get());
+    }
+
+    @Test
+    public void scheduleShutdownTest() throws Exception {
+        ThreadPoolExecutor<Boolean> executor = new ThreadPoolExecutor<>(2, 10000);
+        Result<Boolean> result = executor.schedule(() -> true, 10000);
+
+        //Scheduled work still waiting fails as soon as the pool shuts down
+        executor.shutdown();
+        boolean rejected = false;
+        try {
+            result.get(1000);
+        } catch (RejectedExecutionException e) {
+            rejected = true;
+        }
+        Assert.assertTrue(rejected);
+        Assert.assertTrue(executor.awaitTermination(1000));
+    }
+
+    @Test
+    public void metricsTest() throws Exception {
+        ThreadPoolExecutor<Integer> executor = new ThreadPoolExecutor<>(1, 10000, false, 1, RejectionPolicy.REJECT, 0);
+        Result<Integer> slow = executor.execute(() -> {
+            Thread.sleep(500);
+            return 0;
         });
-        Result result3 = executor.execute(() -> {
-            Thread.sleep(5000);
-            return true;
+        Result<Integer> failing = executor.execute(() -> {
+            throw new IllegalStateException("failed work");
         });
+        Assert.assertEquals(1, executor.getMetrics().getQueueDepth());
+        try {
+            executor.execute(() -> 0);
+        } catch (RejectedExecutionException e) {
+            //Counted in the metrics
+        }
 
-        Thread.sleep(1000);
+        slow.get(5000);
+        try {
+            failing.get(5000);
+        } catch (IllegalStateException e) {
+            //Counted in the metrics, not printed
+        }
+        Thread.sleep(100);
+
+        ExecutorMetrics.Snapshot metrics = executor.getMetrics();
+        Assert.assertEquals(3, metrics.getSubmitted());
+        Assert.assertEquals(1, metrics.getCompleted());
+        Assert.assertEquals(1, metrics.getFailed());
+        Assert.assertEquals(1, metrics.getRejected());
+        Assert.assertEquals(0, metrics.getQueueDepth());
+        Assert.assertEquals(2, metrics.getQueueWait().getCount());
+        Assert.assertTrue(metrics.getQueueWait().getMax() >= 400);
+        Assert.assertEquals(2, metrics.getRunTime().getCount());
+        Assert.assertTrue(metrics.getRunTime().getPercentile(100) >= 450);
+        Assert.assertEquals(3L, metrics.toMap().get("submitted"));
+    }
+
+    @Test
+    public void continuationAfterShutdownTest() throws Exception {
+        ThreadPoolExecutor<Integer> executor = new ThreadPoolExecutor<>(1, 10000);
+        Result<Integer> slow = executor.execute(() -> {
+            Thread.sleep(200);
+            return 1;
+        });
+        Result<Integer> applied = slow.thenApply(value -> value + 1);
         executor.shutdown();
-        Assert.assertTrue(executor.awaitTermination(6000));
+
+        //The pool no longer takes work, so the continuation runs on the completing thread
+        Assert.assertEquals(Optional.of(2), applied.get(5000));
+        Assert.assertTrue(executor.awaitTermination(5000));
+
+        ExecutorMetrics.Snapshot metrics = executor.getMetrics();
+        Assert.assertEquals(2, metrics.getSubmitted());
+        Assert.assertEquals(2, metrics.getCompleted());
+        Assert.assertEquals(0, metrics.getRejected());
     }
 }
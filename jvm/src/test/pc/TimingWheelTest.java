@@ -0,0 +1,62 @@
+package pc;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TimingWheelTest {
+
+    @Test
+    public void expireTest() throws InterruptedException {
+        TimingWheel wheel = new TimingWheel(10, 4);
+        CountDownLatch expired = new CountDownLatch(3);
+        long start = System.nanoTime();
+        long[] expiredAt = new long[3];
+
+        //On a wheel of 4 ticks of 10 milliseconds, these wait in their bucket for several turns
+        for (int i = 0; i < 3; i++) {
+            int index = i;
+            wheel.schedule(() -> {
+                expiredAt[index] = System.nanoTime();
+                expired.countDown();
+            }, start + TimeUnit.MILLISECONDS.toNanos(100 * (i + 1)));
+        }
+
+        Assert.assertTrue(expired.await(2, TimeUnit.SECONDS));
+        for (int i = 0; i < 3; i++) {
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(expiredAt[i] - start);
+            Assert.assertTrue(elapsed >= 100 * (i + 1));
+            Assert.assertTrue(elapsed < 100 * (i + 1) + 100);
+        }
+        wheel.stop();
+    }
+
+    @Test
+    public void cancelTest() throws InterruptedException {
+        TimingWheel wheel = new TimingWheel(10, 4);
+        AtomicInteger runs = new AtomicInteger();
+        TimingWheel.Timeout timeout = wheel.schedule(runs::incrementAndGet,
+                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100));
+
+        Assert.assertTrue(timeout.cancel());
+        Assert.assertFalse(timeout.cancel());
+        Thread.sleep(300);
+        Assert.assertEquals(0, runs.get());
+        wheel.stop();
+    }
+
+    @Test
+    public void stopTest() throws InterruptedException {
+        TimingWheel wheel = new TimingWheel(10, 4);
+        CountDownLatch expired = new CountDownLatch(2);
+        wheel.schedule(expired::countDown, System.nanoTime() + TimeUnit.SECONDS.toNanos(60));
+
+        //Pending timeouts expire when stopped, and the ones scheduled after expire right away
+        wheel.stop();
+        wheel.schedule(expired::countDown, System.nanoTime() + TimeUnit.SECONDS.toNanos(60));
+        Assert.assertTrue(expired.await(1, TimeUnit.SECONDS));
+    }
+}
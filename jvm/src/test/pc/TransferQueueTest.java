@@ -1,7 +1,10 @@
 package pc;
 
+import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
@@ -103,6 +106,77 @@ public class TransferQueueTest {
         assert true;
     }
 
+    @Test
+    public void putOrderTest() throws InterruptedException {
+        TransferQueue<Integer> transferQueue = new TransferQueue<>();
+        for (int i = 0; i < 100; i++)
+            transferQueue.put(i);
+
+        //Put on the caller thread, so messages are already there, in order
+        for (int i = 0; i < 100; i++)
+            Assert.assertEquals(Integer.valueOf(i), transferQueue.take(0));
+        Assert.assertNull(transferQueue.take(0));
+    }
+
+    @Test
+    public void putWakesTakerTest() throws InterruptedException {
+        TransferQueue<String> transferQueue = new TransferQueue<>();
+        List<String> results = new LinkedList<>();
+
+        Thread th = new Thread(() -> {
+            try {
+                String res = transferQueue.take(5 * 1000);
+                synchronized (results) {
+                    results.add(res);
+                }
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        th.start();
+        Thread.sleep(500);
+
+        long start = System.currentTimeMillis();
+        transferQueue.put("PutMessage #1");
+        th.join();
+        Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+        Assert.assertEquals("PutMessage #1", results.get(0));
+    }
+
+    @Test
+    public void putAllDrainToTest() throws InterruptedException {
+        TransferQueue<Integer> transferQueue = new TransferQueue<>();
+        transferQueue.putAll(Arrays.asList(0, 1, 2, 3, 4));
+        transferQueue.put(5);
+
+        List<Integer> batch = new ArrayList<>();
+        Assert.assertEquals(4, transferQueue.drainTo(batch, 4));
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3), batch);
+        batch.clear();
+        Assert.assertEquals(2, transferQueue.drainTo(batch, 10));
+        Assert.assertEquals(Arrays.asList(4, 5), batch);
+        Assert.assertEquals(0, transferQueue.drainTo(batch, 10));
+    }
+
+    @Test
+    public void timedDrainToTest() throws InterruptedException {
+        TransferQueue<String> transferQueue = new TransferQueue<>();
+        List<String> batch = new ArrayList<>();
+
+        long start = System.currentTimeMillis();
+        Assert.assertEquals(0, transferQueue.drainTo(batch, 10, 500));
+        Assert.assertTrue(System.currentTimeMillis() - start >= 500);
+
+        //A transferring thread is released when its message is drained
+        Thread th = newTransferThread(transferQueue, "TransferMessage #1");
+        th.start();
+        Thread.sleep(500);
+        transferQueue.putAll(Arrays.asList("PutMessage #2", "PutMessage #3"));
+        Assert.assertEquals(3, transferQueue.drainTo(batch, 10, 5 * 1000));
+        Assert.assertEquals(Arrays.asList("TransferMessage #1", "PutMessage #2", "PutMessage #3"), batch);
+        th.join();
+    }
+
     private Thread newTransferThread(TransferQueue<String> transferQueue, String str) {
         return new Thread(() -> {
             try {
@@ -0,0 +1,59 @@
+package pc;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class VirtualThreadExecutorTest extends ResultExecutorTest {
+
+    @Override
+    protected <T> ResultExecutor<T> newExecutor(int maxPoolSize, int keepAliveTime) {
+        return new VirtualThreadExecutor<>(maxPoolSize);
+    }
+
+    @Test
+    public void manyBlockingWorksTest() throws Exception {
+        VirtualThreadExecutor<Integer> executor = new VirtualThreadExecutor<>(10000);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Result<Integer>> results = new ArrayList<>();
+
+        //10000 works blocking for one second all run at the same time
+        for (int i = 0; i < 10000; i++) {
+            results.add(executor.execute(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(1000);
+                running.decrementAndGet();
+                return 1;
+            }));
+        }
+        Assert.assertTrue(Result.allOf(results).get(10000).isPresent());
+        Assert.assertTrue(maxRunning.get() > 1000);
+
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(1000));
+        Assert.assertEquals(10000, executor.getAvailablePermits());
+    }
+
+    @Test
+    public void permitsBoundConcurrencyTest() throws Exception {
+        VirtualThreadExecutor<Integer> executor = new VirtualThreadExecutor<>(2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Result<Integer>> results = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            results.add(executor.execute(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(200);
+                running.decrementAndGet();
+                return 1;
+            }));
+        }
+        Assert.assertTrue(Result.allOf(results).get(5000).isPresent());
+        Assert.assertEquals(2, maxRunning.get());
+    }
+}